@@ -0,0 +1,51 @@
+package com.ashraf.payment.benchmark;
+
+import com.ashraf.payment.config.JwtProperties;
+import com.ashraf.payment.config.SessionProperties;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+
+/**
+ * Shared configuration for benchmarks that run components outside the Spring context.
+ */
+final class BenchmarkFixtures {
+
+    static final String SECRET = "benchmark-secret-key-which-is-at-least-32-characters-long";
+
+    private BenchmarkFixtures() {}
+
+    static JwtProperties jwtProperties(long verifiedTokenCacheSize) {
+        return new JwtProperties(SECRET, 3600, 604800, verifiedTokenCacheSize);
+    }
+
+    static SessionProperties sessionProperties(long cacheSize) {
+        return new SessionProperties(
+                new SessionProperties.Cache(cacheSize, Duration.ofSeconds(30)),
+                new SessionProperties.Sweeper(false, Duration.ofMinutes(5), Duration.ofDays(30), 500)
+        );
+    }
+
+    /**
+     * Repository stub answering only the given methods; anything else fails loudly.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T stub(Class<T> type, StubAnswer answer) {
+        return (T) Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    Object result = answer.answer(method.getName(), args);
+                    if (result == null && !method.getReturnType().equals(Void.TYPE)) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return result;
+                }
+        );
+    }
+
+    @FunctionalInterface
+    interface StubAnswer {
+        Object answer(String method, Object[] args);
+    }
+}
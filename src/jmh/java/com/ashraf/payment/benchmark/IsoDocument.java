@@ -1,10 +1,14 @@
-package com.ashraf.payment.iso;
+package com.ashraf.payment.benchmark;
 
 import jakarta.xml.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.util.Optional;
 
+/**
+ * JAXB binding of the fields read from pacs.008, as request parsing did before
+ * {@link com.ashraf.payment.iso.Pacs008Reader}. Kept only as the baseline for {@link IsoParsingBenchmark}.
+ */
 @XmlRootElement(
         name = "Document",
         namespace = IsoDocument.NAMESPACE
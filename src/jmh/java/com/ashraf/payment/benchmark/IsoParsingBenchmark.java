@@ -0,0 +1,106 @@
+package com.ashraf.payment.benchmark;
+
+import com.ashraf.payment.iso.IsoTransaction;
+import com.ashraf.payment.iso.Pacs008Reader;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import org.openjdk.jmh.annotations.*;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * pacs.008 parsing for POST /api/payments/iso: JAXB binding of {@link IsoDocument}
+ * (context cached, unmarshaller per message, as Spring's converter does) versus the
+ * {@link Pacs008Reader} StAX pull parser. {@code remittanceLines} pads the message with
+ * elements neither parser needs, as real messages carry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IsoParsingBenchmark {
+
+    @Param({"0", "20", "200"})
+    public int remittanceLines;
+
+    private JAXBContext context;
+    private byte[] message;
+
+    @Setup
+    public void setUp() throws JAXBException {
+        context = JAXBContext.newInstance(IsoDocument.class);
+        message = message(remittanceLines).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public BigDecimal jaxb() throws JAXBException {
+
+        IsoDocument document = context.createUnmarshaller()
+                .unmarshal(new StreamSource(new ByteArrayInputStream(message)), IsoDocument.class)
+                .getValue();
+
+        return document.transaction().orElseThrow().requireAmount();
+    }
+
+    @Benchmark
+    public BigDecimal stax() {
+
+        IsoTransaction transaction = Pacs008Reader.readFirst(new ByteArrayInputStream(message));
+
+        return transaction.amount();
+    }
+
+    private static String message(int remittanceLines) {
+
+        StringBuilder remittance = new StringBuilder();
+        for (int i = 0; i < remittanceLines; i++) {
+            remittance.append("<Ustrd>Invoice INV-%06d settled in full, thank you</Ustrd>".formatted(i));
+        }
+
+        return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                  <FIToFICstmrCdtTrf>
+                    <GrpHdr>
+                      <MsgId>MSG-20260223-000123</MsgId>
+                      <CreDtTm>2026-02-23T10:15:30</CreDtTm>
+                      <NbOfTxs>1</NbOfTxs>
+                      <SttlmInf><SttlmMtd>CLRG</SttlmMtd></SttlmInf>
+                      <InstgAgt><FinInstnId><BICFI>BANKGB2LXXX</BICFI></FinInstnId></InstgAgt>
+                      <InstdAgt><FinInstnId><BICFI>BANKINBBXXX</BICFI></FinInstnId></InstdAgt>
+                    </GrpHdr>
+                    <CdtTrfTxInf>
+                      <PmtId>
+                        <InstrId>INSTR-000123</InstrId>
+                        <EndToEndId>E2E-000123</EndToEndId>
+                        <TxId>TX-000123</TxId>
+                      </PmtId>
+                      <PmtTpInf><SvcLvl><Cd>SEPA</Cd></SvcLvl></PmtTpInf>
+                      <IntrBkSttlmAmt Ccy="INR">20000.00</IntrBkSttlmAmt>
+                      <IntrBkSttlmDt>2026-02-23</IntrBkSttlmDt>
+                      <ChrgBr>SLEV</ChrgBr>
+                      <Dbtr>
+                        <Nm>Acme Trading Ltd</Nm>
+                        <PstlAdr><StrtNm>High Street</StrtNm><BldgNb>1</BldgNb><TwnNm>London</TwnNm><Ctry>GB</Ctry></PstlAdr>
+                      </Dbtr>
+                      <DbtrAcct><Id><IBAN>GB29NWBK60161331926819</IBAN></Id></DbtrAcct>
+                      <DbtrAgt><FinInstnId><BICFI>BANKGB2LXXX</BICFI></FinInstnId></DbtrAgt>
+                      <CdtrAgt><FinInstnId><BICFI>BANKINBBXXX</BICFI></FinInstnId></CdtrAgt>
+                      <Cdtr>
+                        <Nm>Kolkata Exports Pvt Ltd</Nm>
+                        <PstlAdr><StrtNm>Park Street</StrtNm><BldgNb>42</BldgNb><TwnNm>Kolkata</TwnNm><Ctry>IN</Ctry></PstlAdr>
+                      </Cdtr>
+                      <CdtrAcct><Id><Othr><Id>000123456789</Id></Othr></Id></CdtrAcct>
+                      <RmtInf>%s</RmtInf>
+                    </CdtTrfTxInf>
+                  </FIToFICstmrCdtTrf>
+                </Document>
+                """.formatted(remittance).strip();
+    }
+}
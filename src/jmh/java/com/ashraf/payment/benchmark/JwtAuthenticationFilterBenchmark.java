@@ -0,0 +1,84 @@
+package com.ashraf.payment.benchmark;
+
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.entity.UserSession;
+import com.ashraf.payment.repository.UserSessionRepository;
+import com.ashraf.payment.security.JwtAuthenticationFilter;
+import com.ashraf.payment.security.SessionStateCache;
+import com.ashraf.payment.service.JwtService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full filter pass for an authenticated request with an in-memory session repository.
+ * With {@code cacheSize = 0} every request verifies the token and loads the session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    @Param({"0", "100000"})
+    public long cacheSize;
+
+    private JwtAuthenticationFilter filter;
+    private String authorization;
+
+    private final FilterChain chain = (request, response) -> { };
+
+    @Setup
+    public void setUp() {
+
+        UUID userId = UUID.randomUUID();
+        String jti = UUID.randomUUID().toString();
+
+        UserSession session = UserSession.builder()
+                .user(User.builder().id(userId).role(UserRole.ROLE_USER).build())
+                .jti(jti)
+                .active(true)
+                .expiresAt(LocalDateTime.now().plusDays(1))
+                .build();
+
+        UserSessionRepository repository = BenchmarkFixtures.stub(
+                UserSessionRepository.class,
+                (method, args) -> method.equals("findByJtiAndActiveTrue") ? Optional.of(session) : null
+        );
+
+        JwtService jwtService = new JwtService(BenchmarkFixtures.jwtProperties(cacheSize));
+        SessionStateCache sessionStateCache = new SessionStateCache(
+                repository,
+                BenchmarkFixtures.sessionProperties(cacheSize),
+                new SimpleMeterRegistry()
+        );
+
+        filter = new JwtAuthenticationFilter(jwtService, sessionStateCache);
+        authorization = "Bearer " + jwtService.generateAccessToken(userId, jti, UserRole.ROLE_USER);
+    }
+
+    @Benchmark
+    public Object authenticate() throws Exception {
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/payments");
+        request.addHeader("Authorization", authorization);
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        SecurityContextHolder.clearContext();
+
+        return principal;
+    }
+}
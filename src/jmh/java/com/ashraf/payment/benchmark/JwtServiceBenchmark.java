@@ -0,0 +1,80 @@
+package com.ashraf.payment.benchmark;
+
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issuing and verification. {@code legacyIsValidThenParse} reproduces the
+ * pre-cache filter path (two verifications, key and parser rebuilt each time).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private JwtService cached;
+    private JwtService uncached;
+
+    private UUID userId;
+    private String jti;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cached = new JwtService(BenchmarkFixtures.jwtProperties(10_000));
+        uncached = new JwtService(BenchmarkFixtures.jwtProperties(0));
+
+        userId = UUID.randomUUID();
+        jti = UUID.randomUUID().toString();
+        token = cached.generateAccessToken(userId, jti, UserRole.ROLE_USER);
+    }
+
+    @Benchmark
+    public String generateAccessToken() {
+        return cached.generateAccessToken(userId, jti, UserRole.ROLE_USER);
+    }
+
+    @Benchmark
+    public Claims parseCached() {
+        return cached.parse(token);
+    }
+
+    @Benchmark
+    public Claims parseUncached() {
+        return uncached.parse(token);
+    }
+
+    @Benchmark
+    public boolean isValidCached() {
+        return cached.isValid(token);
+    }
+
+    @Benchmark
+    public boolean isValidUncached() {
+        return uncached.isValid(token);
+    }
+
+    @Benchmark
+    public Claims legacyIsValidThenParse() {
+        legacyParse(token);
+        return legacyParse(token);
+    }
+
+    private static Claims legacyParse(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(BenchmarkFixtures.SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
@@ -0,0 +1,109 @@
+package com.ashraf.payment.benchmark;
+
+import com.ashraf.payment.entity.UuidV7Generator;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.*;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bulk insert into a UUID primary key: random v4 ids (GenerationType.UUID) versus time-ordered v7.
+ * <p>
+ * Runs against in-memory H2 by default. Set BENCH_JDBC_URL, BENCH_JDBC_USER and
+ * BENCH_JDBC_PASSWORD to point it at PostgreSQL, where the primary key index size is also
+ * printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class UuidInsertBenchmark {
+
+    private static final int JDBC_BATCH = 1_000;
+
+    @Param({"v4", "v7"})
+    public String generator;
+
+    @Param({"3000000"})
+    public int rows;
+
+    private Connection connection;
+    private Supplier<UUID> ids;
+
+    @Setup(Level.Trial)
+    public void connect() throws SQLException {
+
+        connection = DriverManager.getConnection(
+                env("BENCH_JDBC_URL", "jdbc:h2:mem:uuid_bench;DB_CLOSE_DELAY=-1"),
+                env("BENCH_JDBC_USER", "sa"),
+                env("BENCH_JDBC_PASSWORD", "")
+        );
+        connection.setAutoCommit(false);
+
+        ids = "v7".equals(generator) ? UuidV7Generator::nextUuid : UUID::randomUUID;
+    }
+
+    @Setup(Level.Iteration)
+    public void createTable() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists uuid_bench");
+            statement.execute("create table uuid_bench (id uuid primary key, payload varchar(40) not null)");
+        }
+        connection.commit();
+    }
+
+    @Benchmark
+    public int insert() throws SQLException {
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into uuid_bench (id, payload) values (?, ?)")) {
+
+            for (int i = 1; i <= rows; i++) {
+
+                insert.setObject(1, ids.get());
+                insert.setString(2, "payment-" + i);
+                insert.addBatch();
+
+                if (i % JDBC_BATCH == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+
+            insert.executeBatch();
+            connection.commit();
+        }
+
+        return rows;
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportIndexSize() throws SQLException {
+
+        if (!connection.getMetaData().getDatabaseProductName().equals("PostgreSQL")) {
+            return;
+        }
+
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(
+                     "select pg_size_pretty(pg_relation_size('uuid_bench_pkey'))")) {
+            result.next();
+            System.out.printf("%n[%s] primary key index after %d rows: %s%n",
+                    generator, rows, result.getString(1));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        connection.close();
+    }
+
+    private static String env(String name, String fallback) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? fallback : value;
+    }
+}
@@ -0,0 +1,17 @@
+package com.ashraf.payment.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Idempotency-Key handling for payment creation. Stored results are replayed for {@code ttl};
+ * the most recent {@code cacheSize} keys are also served from memory.
+ */
+@ConfigurationProperties(prefix = "app.idempotency")
+public record IdempotencyProperties(
+        @DefaultValue("24h") Duration ttl,
+        @DefaultValue("10000") long cacheSize,
+        @DefaultValue("PT1H") Duration purgeInterval
+) {}
@@ -0,0 +1,39 @@
+package com.ashraf.payment.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Directory drop-box for pacs.008 files. {@code *.xml} files appearing in {@code directory} are
+ * ingested for the user {@code owner} on {@code workers} threads and then moved, together with a
+ * JSON report, into the {@code done} or {@code failed} subfolder. Payments are written in chunks of
+ * {@code app.payments.batch.chunkSize}. With {@code statusReports}, a pacs.002 for each ingested
+ * message is written next to it in the done folder. Senders should upload under another name and rename to
+ * {@code .xml} when complete, so half-written files are never picked up.
+ */
+@ConfigurationProperties(prefix = "app.iso.ingestion")
+public record IsoIngestionProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("iso-inbox") Path directory,
+        @DefaultValue("done") String doneFolder,
+        @DefaultValue("failed") String failedFolder,
+        String owner,
+        @DefaultValue("2") int workers,
+        @DefaultValue("32") int queueCapacity,
+        @DefaultValue("1m") Duration rescanInterval,
+        @DefaultValue("64KB") DataSize readBufferSize,
+        @DefaultValue("true") boolean statusReports
+) {
+
+    public Path doneDirectory() {
+        return directory.resolve(doneFolder);
+    }
+
+    public Path failedDirectory() {
+        return directory.resolve(failedFolder);
+    }
+}
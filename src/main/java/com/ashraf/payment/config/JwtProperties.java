@@ -1,10 +1,12 @@
 package com.ashraf.payment.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 
 @ConfigurationProperties(prefix = "app.jwt")
 public record JwtProperties(
         String secret,
         long accessExpiration,
-        long refreshExpiration
-) {}
\ No newline at end of file
+        long refreshExpiration,
+        @DefaultValue("10000") long verifiedTokenCacheSize
+) {}
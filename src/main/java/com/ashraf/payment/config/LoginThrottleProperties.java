@@ -0,0 +1,20 @@
+package com.ashraf.payment.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Token-bucket limits applied to login attempts before any database or BCrypt work.
+ * Each bucket allows {@code capacity} attempts in a burst, refilled evenly over its refill period.
+ */
+@ConfigurationProperties(prefix = "app.login-throttle")
+public record LoginThrottleProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100000") long maxTrackedKeys,
+        @DefaultValue("5") int usernameCapacity,
+        @DefaultValue("1m") Duration usernameRefillPeriod,
+        @DefaultValue("20") int ipCapacity,
+        @DefaultValue("1m") Duration ipRefillPeriod
+) {}
@@ -0,0 +1,17 @@
+package com.ashraf.payment.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * BCrypt cost and the dedicated worker pool that runs hashing off the request threads.
+ */
+@ConfigurationProperties(prefix = "app.password-hashing")
+public record PasswordHashingProperties(
+        @DefaultValue("10") int strength,
+        @DefaultValue("4") int poolSize,
+        @DefaultValue("64") int queueCapacity,
+        @DefaultValue("5s") Duration timeout
+) {}
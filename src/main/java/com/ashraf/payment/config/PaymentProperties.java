@@ -0,0 +1,45 @@
+package com.ashraf.payment.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Positive;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+@Validated
+@ConfigurationProperties(prefix = "app.payments")
+public record PaymentProperties(
+        @Valid @DefaultValue Pagination pagination,
+        @Valid @DefaultValue Batch batch,
+        @Valid @DefaultValue Bulk bulk
+) {
+
+    /**
+     * Page size for GET /api/payments; requested sizes are clamped to {@code maxSize}.
+     */
+    public record Pagination(
+            @Positive @DefaultValue("50") int defaultSize,
+            @Positive @DefaultValue("500") int maxSize
+    ) {}
+
+    /**
+     * Batch creation: at most {@code maxItems} per request, committed {@code chunkSize} rows at a time.
+     * A pacs.008 posted to /iso/bulk may hold at most {@code maxIsoTransactions}, since its results
+     * are returned in one response; the ingestion directory has no limit.
+     */
+    public record Batch(
+            @Positive @DefaultValue("1000") int maxItems,
+            @Positive @DefaultValue("500") int chunkSize,
+            @Positive @DefaultValue("10000") int maxIsoTransactions
+    ) {}
+
+    /**
+     * Bulk transitions: {@code chunkSize} rows are locked and updated per transaction,
+     * at most {@code maxIds} per request, with a progress log line every {@code progressEveryChunks}.
+     */
+    public record Bulk(
+            @Positive @DefaultValue("500") int chunkSize,
+            @Positive @DefaultValue("10000") int maxIds,
+            @Positive @DefaultValue("10") int progressEveryChunks
+    ) {}
+}
@@ -0,0 +1,137 @@
+package com.ashraf.payment.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.task.SimpleAsyncTaskSchedulerCustomizer;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+
+/**
+ * Sends {@code @Transactional(readOnly = true)} work to a read replica when
+ * {@code app.datasource.replica.jdbc-url} is set; everything else stays on the primary.
+ * <p>
+ * The primary pool is configured as usual through {@code spring.datasource.*} and
+ * {@code spring.datasource.hikari.*}; the replica pool through {@code app.datasource.replica.*}
+ * (any Hikari setting). A {@link LazyConnectionDataSourceProxy} defers the connection until the
+ * first statement, when {@link ReplicaRoutingDataSource} can see whether the transaction is read-only.
+ * Once a request or a scheduled task commits a write, its later reads stay on the primary.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "app.datasource.replica", name = "jdbc-url")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+
+        if (!StringUtils.hasText(properties.getName())) {
+            dataSource.setPoolName("primary");
+        }
+
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.replica")
+    HikariDataSource replicaDataSource() {
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(
+            @Qualifier("primaryDataSource") DataSource primary,
+            @Qualifier("replicaDataSource") DataSource replica
+    ) {
+        // Hibernate asks for the connection when the transaction begins, before it is marked
+        // read-only; the proxy holds off the actual choice until the first statement
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica));
+    }
+
+    // Without this Hibernate keeps one connection for the whole open-in-view session,
+    // so a read after a write would reuse the primary connection and never route
+    @Bean
+    HibernatePropertiesCustomizer releaseConnectionsAfterTransaction() {
+        return properties -> properties.put(
+                "hibernate.connection.handling_mode",
+                "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION"
+        );
+    }
+
+    @Bean
+    TransactionExecutionListener readYourWritesListener() {
+        return new TransactionExecutionListener() {
+            @Override
+            public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+                if (commitFailure == null && !transaction.isReadOnly()) {
+                    ReadYourWrites.pin();
+                }
+            }
+        };
+    }
+
+    // Scheduler threads are reused across runs, so a write in one run must not pin the next
+    @Bean
+    ThreadPoolTaskSchedulerCustomizer readYourWritesSchedulerCustomizer() {
+        return scheduler -> scheduler.setTaskDecorator(ReadYourWrites::clearedAfter);
+    }
+
+    @Bean
+    SimpleAsyncTaskSchedulerCustomizer readYourWritesVirtualSchedulerCustomizer() {
+        return scheduler -> scheduler.setTaskDecorator(ReadYourWrites::clearedAfter);
+    }
+
+    @Bean
+    ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter();
+    }
+
+    static class ReadYourWritesFilter extends OncePerRequestFilter implements Ordered {
+
+        @Override
+        protected void doFilterInternal(
+                HttpServletRequest request,
+                HttpServletResponse response,
+                FilterChain chain
+        ) throws ServletException, IOException {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                ReadYourWrites.clear();
+            }
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.ashraf.payment.config;
+
+/**
+ * Per-thread marker that this request has committed a write, so later read-only
+ * transactions in the same request see it on the primary instead of a lagging replica.
+ * Threads that outlive their unit of work, like scheduler and worker threads, must clear
+ * it when that work ends.
+ */
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private ReadYourWrites() {}
+
+    public static void pin() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+
+    public static void clear() {
+        PINNED.remove();
+    }
+
+    public static Runnable clearedAfter(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } finally {
+                clear();
+            }
+        };
+    }
+}
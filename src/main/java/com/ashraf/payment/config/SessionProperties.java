@@ -0,0 +1,33 @@
+package com.ashraf.payment.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.session")
+public record SessionProperties(
+        @DefaultValue Cache cache,
+        @DefaultValue Sweeper sweeper
+) {
+
+    /**
+     * Session-state cache in front of the user_sessions table.
+     * The TTL bounds how long another instance may serve a revoked session.
+     */
+    public record Cache(
+            @DefaultValue("100000") long maximumSize,
+            @DefaultValue("30s") Duration ttl
+    ) {}
+
+    /**
+     * Background job that deactivates expired sessions and deletes
+     * sessions that have been inactive for longer than the retention period.
+     */
+    public record Sweeper(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("5m") Duration interval,
+            @DefaultValue("30d") Duration retention,
+            @DefaultValue("500") int batchSize
+    ) {}
+}
@@ -1,6 +1,7 @@
 package com.ashraf.payment.controller;
 
 import com.ashraf.payment.dto.*;
+import com.ashraf.payment.security.LoginRateLimiter;
 import com.ashraf.payment.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -20,6 +21,7 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
 
     private final AuthService authService;
+    private final LoginRateLimiter loginRateLimiter;
 
 
     @Operation(summary = "Register new user")
@@ -37,13 +39,18 @@ public class AuthController {
     @Operation(summary = "Login and receive JWT token")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Login successful"),
-            @ApiResponse(responseCode = "401", description = "Invalid credentials")
+            @ApiResponse(responseCode = "401", description = "Invalid credentials"),
+            @ApiResponse(responseCode = "429", description = "Too many login attempts, see Retry-After")
     })
     @PostMapping("/login")
     public ApiResult<AuthResponse> login(
             @RequestBody AuthRequest request,
             HttpServletRequest httpRequest
     ) {
+        // Throttled here, outside the service's transaction, so a rejected attempt
+        // never borrows a connection or runs BCrypt
+        loginRateLimiter.acquire(request.username(), httpRequest.getRemoteAddr());
+
         return ApiResult.success(
                 authService.login(request, httpRequest)
         );
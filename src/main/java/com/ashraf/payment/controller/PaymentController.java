@@ -1,8 +1,15 @@
 package com.ashraf.payment.controller;
 
 import com.ashraf.payment.dto.*;
-import com.ashraf.payment.exceptions.InvalidIsoStructureException;
-import com.ashraf.payment.iso.IsoDocument;
+import com.ashraf.payment.entity.PaymentStatus;
+import com.ashraf.payment.exceptions.PreconditionFailedException;
+import com.ashraf.payment.exceptions.ResourceNotFoundException;
+import com.ashraf.payment.iso.IsoTransaction;
+import com.ashraf.payment.iso.Pacs008Reader;
+import com.ashraf.payment.service.IdempotencyService;
+import com.ashraf.payment.service.Pacs002ReportService;
+import com.ashraf.payment.service.PaymentBulkTransitionService;
+import com.ashraf.payment.service.PaymentExportService;
 import com.ashraf.payment.service.PaymentService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -12,15 +19,25 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Tag(name = "Payments", description = "Payment lifecycle management")
@@ -30,10 +47,14 @@ import java.util.UUID;
 public class PaymentController {
 
     private final PaymentService service;
+    private final PaymentExportService exportService;
+    private final IdempotencyService idempotencyService;
+    private final PaymentBulkTransitionService bulkTransitionService;
+    private final Pacs002ReportService statusReportService;
 
     @Operation(
             summary = "Process ISO 20022 pacs.008 XML payment",
-            description = "Parses ISO 20022 pacs.008 message and extracts settlement amount and currency"
+            description = "Parses ISO 20022 pacs.008 message and extracts settlement amount and currency. The referenceId is derived from the caller, MsgId and TxId (or EndToEndId), so resubmitting the same message returns the existing payment; resubmitting it with a different amount or currency is rejected."
     )
     @io.swagger.v3.oas.annotations.parameters.RequestBody(
             required = true,
@@ -48,6 +69,10 @@ public class PaymentController {
                                     <MsgId>MSG124</MsgId>
                                 </GrpHdr>
                                 <CdtTrfTxInf>
+                                    <PmtId>
+                                        <EndToEndId>E2E-124</EndToEndId>
+                                        <TxId>TX-124</TxId>
+                                    </PmtId>
                                     <IntrBkSttlmAmt Ccy="INR">20000</IntrBkSttlmAmt>
                                 </CdtTrfTxInf>
                             </FIToFICstmrCdtTrf>
@@ -59,93 +84,274 @@ public class PaymentController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Payment created successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid ISO 20022 XML structure"),
-            @ApiResponse(responseCode = "401", description = "Unauthorized")
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "409", description = "The transaction was already received with a different amount or currency"),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key reused with a different transaction")
     })
     @PostMapping(value = "/iso", consumes = "application/xml")
-    public ApiResult<PaymentResponse> processIso(@RequestBody IsoDocument doc) {
+    public ApiResult<PaymentResponse> processIso(
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            InputStream body
+    ) {
+
+        IsoTransaction transaction = Pacs008Reader.readFirst(body);
+
+        // The key is bound to the whole transaction: its ids as well as amount and currency
+        return ApiResult.success(idempotencyService.execute(
+                idempotencyKey,
+                transaction,
+                () -> service.createIsoPayment(transaction)
+        ));
+    }
+    @Operation(
+            summary = "Ingest a multi-transaction ISO 20022 pacs.008 message",
+            description = "Creates one payment per CdtTrfTxInf. Transactions are streamed from the body and committed in chunks of app.payments.batch.chunkSize; invalid transactions are reported and skipped. If the XML breaks off, chunks already committed stay. A message may hold at most app.payments.batch.maxIsoTransactions transactions, since all results are returned at once; larger files go through the ingestion directory."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Per-transaction results"),
+            @ApiResponse(responseCode = "400", description = "Invalid ISO 20022 XML structure, or too many transactions"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @PostMapping(value = "/iso/bulk", consumes = "application/xml")
+    public ApiResult<BatchPaymentResponse> processIsoBulk(InputStream body) {
+        return ApiResult.success(service.ingestIso(body));
+    }
 
-        var transaction = doc.transaction()
-                .orElseThrow(() ->
-                        new InvalidIsoStructureException("Invalid ISO 20022 structure")
-                );
+    @Operation(
+            summary = "Get the ISO 20022 pacs.002 status report for an ingested message",
+            description = "Streams one TxInfAndSts per payment created from the pacs.008 with this MsgId. Status: CREATED → ACTC, AUTHORIZED → ACSP, CAPTURED and REFUNDED → ACSC, FAILED → RJCT."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "pacs.002 XML stream"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "404", description = "No payments from this message")
+    })
+    @GetMapping("/iso/status-report")
+    public void isoStatusReport(
+            @RequestParam String messageId,
+            HttpServletResponse response
+    ) throws IOException {
+
+        // Checked up front so a 404 can still be sent before the XML starts streaming
+        if (!statusReportService.exists(messageId)) {
+            throw new ResourceNotFoundException("No payments for ISO message %s".formatted(messageId));
+        }
 
-        var request = new PaymentRequest(
-                transaction.requireAmount(),
-                transaction.requireCurrency(),
-                "ISO-%d".formatted(System.currentTimeMillis())
+        response.setContentType("application/xml");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(
+                HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"pacs002.xml\""
         );
 
-        return ApiResult.success(service.createPayment(request));
+        statusReportService.write(messageId, response.getOutputStream());
     }
+
     @Operation(summary = "Create a new payment")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Payment created"),
             @ApiResponse(responseCode = "400", description = "Invalid input"),
-            @ApiResponse(responseCode = "401", description = "Unauthorized")
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key reused with a different request")
     })
     @PostMapping
     public ApiResult<PaymentResponse> create(
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody PaymentRequest request
     ) {
-        return ApiResult.success(service.createPayment(request));
+        return ApiResult.success(idempotencyService.execute(
+                idempotencyKey,
+                request,
+                () -> service.createPayment(request)
+        ));
     }
 
-    @Operation(summary = "Get payment by ID")
+    @Operation(
+            summary = "Create payments in bulk",
+            description = "Creates up to app.payments.batch.maxItems payments in one call. Each item gets its own result; duplicates and invalid items do not abort the batch."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Per-item results"),
+            @ApiResponse(responseCode = "400", description = "Empty or oversized batch"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @PostMapping("/batch")
+    public ApiResult<BatchPaymentResponse> createBatch(
+            @Valid @RequestBody BatchPaymentRequest request
+    ) {
+        return ApiResult.success(service.createPayments(request.payments()));
+    }
+
+    @Operation(
+            summary = "Get payment by ID",
+            description = "Returns an ETag; send it back in If-None-Match to get 304 Not Modified while the payment is unchanged."
+    )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Payment found"),
+            @ApiResponse(responseCode = "304", description = "Payment unchanged since the given ETag"),
             @ApiResponse(responseCode = "404", description = "Payment not found"),
             @ApiResponse(responseCode = "401", description = "Unauthorized")
     })
     @GetMapping("/{id}")
-    public ApiResult<PaymentResponse> get(@PathVariable UUID id) {
-        return ApiResult.success(service.getPayment(id));
+    public ResponseEntity<ApiResult<PaymentResponse>> get(@PathVariable UUID id, WebRequest webRequest) {
+
+        // Pollers: compare against the version alone before loading and mapping the payment
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+
+            Optional<Long> version = service.getPaymentVersion(id);
+
+            if (version.isPresent()
+                    && webRequest.checkNotModified(new PaymentETag(id, version.get()).value())) {
+                return null;
+            }
+        }
+
+        return withETag(service.getPayment(id));
     }
 
 
-    @Operation(summary = "Get all payments")
-    @ApiResponse(responseCode = "200", description = "List of payments")
+    @Operation(
+            summary = "Get payments",
+            description = "Newest-first page of the caller's payments. Pass nextCursor from the previous page as cursor to continue."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Page of payments"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or filter")
+    })
     @GetMapping
-    public ApiResult<List<PaymentResponse>> getAll() {
-        return ApiResult.success(service.getAllPayments());
+    public ApiResult<List<PaymentResponse>> getAll(
+            @RequestParam(required = false) PaymentStatus status,
+            @RequestParam(required = false) String currency,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit
+    ) {
+        PaymentPage page = service.getAllPayments(status, currency, cursor, limit);
+        return ApiResult.page(page.items(), page.nextCursor());
+    }
+
+
+
+    @Operation(
+            summary = "Export payments",
+            description = "Streams the caller's payments, oldest first, as NDJSON or CSV. The createdAt range is optional: from inclusive, to exclusive. CSV text cells starting with =, +, -, @, tab or carriage return are prefixed with a single quote so spreadsheets do not run them as formulas."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Export stream"),
+            @ApiResponse(responseCode = "400", description = "Invalid format or date"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/export")
+    public void export(
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            HttpServletResponse response
+    ) throws IOException {
+
+        response.setContentType(format.contentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(
+                HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"payments.%s\"".formatted(format.extension())
+        );
+
+        exportService.export(format, from, to, response.getOutputStream());
     }
 
 
 
-    @Operation(summary = "Authorize a payment")
+    @Operation(
+            summary = "Transition payments in bulk",
+            description = "Applies AUTHORIZE, CAPTURE or REFUND to the given ids, or to every own payment in the source status created before createdBefore. Runs in chunks of app.payments.bulk.chunkSize, one transaction each. REFUND is admin-only."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Per-id outcomes and counts"),
+            @ApiResponse(responseCode = "400", description = "Neither or both of ids and createdBefore, or too many ids"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - REFUND is admin only")
+    })
+    @PostMapping("/bulk-transition")
+    @PreAuthorize("#request.transition() != T(com.ashraf.payment.entity.PaymentTransition).REFUND or hasRole('ADMIN')")
+    public ApiResult<BulkTransitionResponse> bulkTransition(
+            @Valid @RequestBody BulkTransitionRequest request
+    ) {
+        return ApiResult.success(bulkTransitionService.apply(request));
+    }
+
+    @Operation(
+            summary = "Authorize a payment",
+            description = "Send the payment's ETag in If-Match to apply only if it has not changed."
+    )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Payment authorized"),
-            @ApiResponse(responseCode = "400", description = "Invalid state transition"),
+            @ApiResponse(responseCode = "409", description = "Payment is not in a state that allows this transition"),
+            @ApiResponse(responseCode = "412", description = "Payment changed since the If-Match ETag"),
             @ApiResponse(responseCode = "404", description = "Payment not found")
     })
     @PostMapping("/{id}/authorize")
-    public ApiResult<PaymentResponse> authorize(@PathVariable UUID id) {
-        return ApiResult.success(service.authorizePayment(id));
+    public ResponseEntity<ApiResult<PaymentResponse>> authorize(
+            @PathVariable UUID id,
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
+        return withETag(service.authorizePayment(id, expectedVersion(id, ifMatch)));
     }
 
 
-    @Operation(summary = "Capture an authorized payment")
+    @Operation(
+            summary = "Capture an authorized payment",
+            description = "Send the payment's ETag in If-Match to apply only if it has not changed."
+    )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Payment captured"),
-            @ApiResponse(responseCode = "400", description = "Invalid state transition"),
+            @ApiResponse(responseCode = "409", description = "Payment is not in a state that allows this transition"),
+            @ApiResponse(responseCode = "412", description = "Payment changed since the If-Match ETag"),
             @ApiResponse(responseCode = "404", description = "Payment not found")
     })
     @PostMapping("/{id}/capture")
-    public ApiResult<PaymentResponse> capture(@PathVariable UUID id) {
-        return ApiResult.success(service.capturePayment(id));
+    public ResponseEntity<ApiResult<PaymentResponse>> capture(
+            @PathVariable UUID id,
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
+        return withETag(service.capturePayment(id, expectedVersion(id, ifMatch)));
     }
 
     @Operation(
             summary = "Refund payment",
-            description = "Admin-only endpoint to refund captured payments"
+            description = "Admin-only endpoint to refund captured payments. Supports If-Match like the other transitions."
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Payment refunded"),
             @ApiResponse(responseCode = "403", description = "Forbidden - Admin only"),
-            @ApiResponse(responseCode = "404", description = "Payment not found")
+            @ApiResponse(responseCode = "404", description = "Payment not found"),
+            @ApiResponse(responseCode = "409", description = "Payment is not captured"),
+            @ApiResponse(responseCode = "412", description = "Payment changed since the If-Match ETag")
     })
     @PostMapping("/{id}/refund")
     @PreAuthorize("hasRole('ADMIN')")
-    public ApiResult<PaymentResponse> refund(@PathVariable UUID id) {
-        return ApiResult.success(service.refundPayment(id));
+    public ResponseEntity<ApiResult<PaymentResponse>> refund(
+            @PathVariable UUID id,
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
+        return withETag(service.refundPayment(id, expectedVersion(id, ifMatch)));
+    }
+
+    private static ResponseEntity<ApiResult<PaymentResponse>> withETag(PaymentResponse payment) {
+        return ResponseEntity.ok()
+                .eTag(PaymentETag.of(payment).value())
+                .body(ApiResult.success(payment));
+    }
+
+    // null means no precondition: no If-Match header, or "*" (the payment only has to exist)
+    private static Long expectedVersion(UUID id, String ifMatch) {
+
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.strip().equals("*")) {
+            return null;
+        }
+
+        return PaymentETag.parse(ifMatch)
+                .filter(tag -> tag.id().equals(id))
+                .map(PaymentETag::version)
+                .orElseThrow(() -> new PreconditionFailedException(
+                        "If-Match does not match payment %s".formatted(id)
+                ));
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.ashraf.payment.dto;
 
 import com.ashraf.payment.exceptions.ApiError;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.time.Instant;
 
@@ -8,14 +9,23 @@ public record ApiResult<T>(
         boolean success,
         T data,
         ApiError error,
-        Instant timestamp
+        Instant timestamp,
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String nextCursor
 ) {
 
     public static <T> ApiResult<T> success(T data) {
-        return new ApiResult<>(true, data, null, Instant.now());
+        return new ApiResult<>(true, data, null, Instant.now(), null);
+    }
+
+    /**
+     * A page of results; {@code nextCursor} is omitted on the last page.
+     */
+    public static <T> ApiResult<T> page(T data, String nextCursor) {
+        return new ApiResult<>(true, data, null, Instant.now(), nextCursor);
     }
 
     public static <T> ApiResult<T> failure(ApiError error) {
-        return new ApiResult<>(false, null, error, Instant.now());
+        return new ApiResult<>(false, null, error, Instant.now(), null);
     }
-}
\ No newline at end of file
+}
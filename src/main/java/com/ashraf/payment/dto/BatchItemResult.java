@@ -0,0 +1,40 @@
+package com.ashraf.payment.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.UUID;
+
+@Schema(description = "Outcome of one item in a batch")
+public record BatchItemResult(
+
+        @Schema(example = "0", description = "Position of the item in the request")
+        int index,
+
+        @Schema(example = "ORDER-123")
+        String referenceId,
+
+        @Schema(example = "CREATED")
+        BatchItemStatus status,
+
+        @Schema(example = "550e8400-e29b-41d4-a716-446655440000")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        UUID paymentId,
+
+        @Schema(example = "Reference already exists")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String error
+) {
+
+    public static BatchItemResult created(int index, String referenceId, UUID paymentId) {
+        return new BatchItemResult(index, referenceId, BatchItemStatus.CREATED, paymentId, null);
+    }
+
+    public static BatchItemResult duplicate(int index, String referenceId) {
+        return new BatchItemResult(index, referenceId, BatchItemStatus.DUPLICATE, null, "Reference already exists");
+    }
+
+    public static BatchItemResult failed(int index, String referenceId, String error) {
+        return new BatchItemResult(index, referenceId, BatchItemStatus.FAILED, null, error);
+    }
+}
@@ -0,0 +1,7 @@
+package com.ashraf.payment.dto;
+
+public enum BatchItemStatus {
+    CREATED,
+    DUPLICATE,
+    FAILED
+}
@@ -0,0 +1,15 @@
+package com.ashraf.payment.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+@Schema(description = "Batch payment creation request")
+public record BatchPaymentRequest(
+
+        // Items are validated one by one so a bad item fails alone instead of the whole batch
+        @Schema(description = "Payments to create, in order")
+        @NotEmpty
+        List<PaymentRequest> payments
+) {}
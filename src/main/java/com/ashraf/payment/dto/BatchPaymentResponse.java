@@ -0,0 +1,36 @@
+package com.ashraf.payment.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Batch payment creation result")
+public record BatchPaymentResponse(
+
+        @Schema(example = "998")
+        long created,
+
+        @Schema(example = "1")
+        long duplicates,
+
+        @Schema(example = "1")
+        long failed,
+
+        List<BatchItemResult> items
+) {
+
+    public static BatchPaymentResponse of(List<BatchItemResult> items) {
+        return new BatchPaymentResponse(
+                count(items, BatchItemStatus.CREATED),
+                count(items, BatchItemStatus.DUPLICATE),
+                count(items, BatchItemStatus.FAILED),
+                items
+        );
+    }
+
+    private static long count(List<BatchItemResult> items, BatchItemStatus status) {
+        return items.stream()
+                .filter(item -> item.status() == status)
+                .count();
+    }
+}
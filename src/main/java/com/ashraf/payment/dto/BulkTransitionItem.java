@@ -0,0 +1,15 @@
+package com.ashraf.payment.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.UUID;
+
+@Schema(description = "Outcome of a bulk transition for one payment")
+public record BulkTransitionItem(
+
+        @Schema(example = "550e8400-e29b-41d4-a716-446655440000")
+        UUID id,
+
+        @Schema(example = "APPLIED")
+        TransitionOutcome outcome
+) {}
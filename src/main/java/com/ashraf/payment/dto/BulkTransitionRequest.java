@@ -0,0 +1,23 @@
+package com.ashraf.payment.dto;
+
+import com.ashraf.payment.entity.PaymentTransition;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Schema(description = "Bulk transition request: either explicit ids or every matching payment created before a timestamp")
+public record BulkTransitionRequest(
+
+        @Schema(example = "CAPTURE")
+        @NotNull
+        PaymentTransition transition,
+
+        @Schema(description = "Payments to transition")
+        List<UUID> ids,
+
+        @Schema(example = "2026-02-23T23:59:59", description = "Transition every payment in the source status created before this time")
+        LocalDateTime createdBefore
+) {}
@@ -0,0 +1,49 @@
+package com.ashraf.payment.dto;
+
+import com.ashraf.payment.entity.PaymentTransition;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Bulk transition result")
+public record BulkTransitionResponse(
+
+        @Schema(example = "CAPTURE")
+        PaymentTransition transition,
+
+        @Schema(example = "4998")
+        long applied,
+
+        @Schema(example = "1")
+        long conflicts,
+
+        @Schema(example = "1")
+        long notFound,
+
+        @Schema(description = "False when a createdBefore run stopped at the per-request limit and more payments may match")
+        boolean complete,
+
+        List<BulkTransitionItem> items
+) {
+
+    public static BulkTransitionResponse of(
+            PaymentTransition transition,
+            boolean complete,
+            List<BulkTransitionItem> items
+    ) {
+        return new BulkTransitionResponse(
+                transition,
+                count(items, TransitionOutcome.APPLIED),
+                count(items, TransitionOutcome.CONFLICT),
+                count(items, TransitionOutcome.NOT_FOUND),
+                complete,
+                items
+        );
+    }
+
+    private static long count(List<BulkTransitionItem> items, TransitionOutcome outcome) {
+        return items.stream()
+                .filter(item -> item.outcome() == outcome)
+                .count();
+    }
+}
@@ -0,0 +1,25 @@
+package com.ashraf.payment.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Outcome of one pacs.008 file from the ingestion directory, written next to the archived file.
+ * {@code lagMillis} is the time between the file's last modification and the start of ingestion.
+ * A failed file may still have committed some chunks; {@code error} says why it stopped.
+ */
+public record IsoFileReport(
+        String file,
+        String messageId,
+        boolean succeeded,
+        long transactions,
+        long created,
+        long duplicates,
+        long failed,
+        Instant startedAt,
+        long durationMillis,
+        long lagMillis,
+        double transactionsPerSecond,
+        String error,
+        List<BatchItemResult> rejected
+) {}
@@ -0,0 +1,12 @@
+package com.ashraf.payment.dto;
+
+/**
+ * Totals for one ingested pacs.008 message.
+ */
+public record IsoIngestionSummary(
+        String messageId,
+        long transactions,
+        long created,
+        long duplicates,
+        long failed
+) {}
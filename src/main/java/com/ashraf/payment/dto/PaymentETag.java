@@ -0,0 +1,43 @@
+package com.ashraf.payment.dto;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Strong entity tag of a payment, {@code "<id>-<version>"}; changes on every update.
+ */
+public record PaymentETag(UUID id, long version) {
+
+    public static PaymentETag of(PaymentResponse payment) {
+        return new PaymentETag(payment.id(), payment.version());
+    }
+
+    /**
+     * Parses one quoted tag as sent in If-Match; empty if it is not a tag of this form.
+     */
+    public static Optional<PaymentETag> parse(String header) {
+
+        String value = header.strip();
+
+        if (value.length() < 2 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            return Optional.empty();
+        }
+
+        value = value.substring(1, value.length() - 1);
+        int separator = value.lastIndexOf('-');
+
+        try {
+            return Optional.of(new PaymentETag(
+                    UUID.fromString(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1))
+            ));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return Optional.empty();
+        }
+    }
+
+    /** Unquoted; Spring adds the quotes when writing the header. */
+    public String value() {
+        return id + "-" + version;
+    }
+}
@@ -0,0 +1,8 @@
+package com.ashraf.payment.dto;
+
+import java.util.List;
+
+public record PaymentPage(
+        List<PaymentResponse> items,
+        String nextCursor
+) {}
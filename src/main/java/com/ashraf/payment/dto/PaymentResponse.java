@@ -1,6 +1,7 @@
 package com.ashraf.payment.dto;
 
 import com.ashraf.payment.entity.PaymentStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.math.BigDecimal;
@@ -35,5 +36,10 @@ public record PaymentResponse(
         UUID userId,
 
         @Schema(example = "ashraf")
-        String username
+        String username,
+
+        // Optimistic-lock version; exposed only through the ETag header
+        @JsonIgnore
+        @Schema(hidden = true)
+        Long version
 ) {}
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.ashraf.payment.dto;
+
+import com.ashraf.payment.entity.UserRole;
+
+import java.util.UUID;
+
+/**
+ * What is needed to issue an access token for a session, read without loading entities.
+ */
+public record SessionIdentity(
+        String jti,
+        UUID userId,
+        UserRole role
+) {}
@@ -0,0 +1,7 @@
+package com.ashraf.payment.dto;
+
+public enum TransitionOutcome {
+    APPLIED,
+    CONFLICT,
+    NOT_FOUND
+}
@@ -0,0 +1,55 @@
+package com.ashraf.payment.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(
+        name = "idempotency_records",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_idempotency_user_key",
+                columnNames = {"user_id", "idempotency_key"}
+        ),
+        indexes = @Index(name = "idx_idempotency_expires", columnList = "expires_at")
+)
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+
+    @Id
+    @UuidV7
+    private UUID id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    // SHA-256 of the request body the key was first used with
+    @Column(nullable = false, length = 32)
+    private byte[] fingerprint;
+
+    @Column(nullable = false)
+    private UUID paymentId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @PrePersist
+    void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public boolean isExpired() {
+        return !expiresAt.isAfter(LocalDateTime.now());
+    }
+}
@@ -10,7 +10,14 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "payments")
+@Table(
+        name = "payments",
+        indexes = {
+                @Index(name = "idx_payments_user_created", columnList = "user_id, created_at, id"),
+                @Index(name = "idx_payments_user_status_created", columnList = "user_id, status, created_at, id"),
+                @Index(name = "idx_payments_user_iso_message", columnList = "user_id, iso_message_id, id")
+        }
+)
 @Getter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @AllArgsConstructor
@@ -18,7 +25,7 @@ import java.util.UUID;
 public class Payment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7
     private UUID id;
 
     @Column(nullable = false, precision = 19, scale = 4)
@@ -38,6 +45,16 @@ public class Payment {
     @Column(nullable = false, unique = true, length = 100)
     private String referenceId;
 
+    // Only for payments from a pacs.008: the original message and transaction, for pacs.002 reports
+    @Column(length = 35, updatable = false)
+    private String isoMessageId;
+
+    @Column(length = 35, updatable = false)
+    private String isoEndToEndId;
+
+    @Column(length = 35, updatable = false)
+    private String isoTransactionId;
+
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -64,37 +81,13 @@ public class Payment {
                 .build();
     }
 
-    public void authorize() {
-        if (status.canAuthorize()) {
-            throw new IllegalStateException(
-                    "Cannot authorize payment in state %s"
-                            .formatted(status)
-            );
-        }
-        this.status = PaymentStatus.AUTHORIZED;
-    }
-
-    public void capture() {
-        if (status.canCapture()) {
-            throw new IllegalStateException(
-                    "Cannot capture payment in state %s"
-                            .formatted(status)
-            );
-        }
-        this.status = PaymentStatus.CAPTURED;
-    }
-
-    public void refund() {
-        if (status.canRefund()) {
-            throw new IllegalStateException(
-                    "Cannot refund payment in state %s"
-                            .formatted(status)
-            );
-        }
-        this.status = PaymentStatus.REFUNDED;
-    }
-
     public void assignUser(User user) {
         this.user = user;
     }
+
+    public void assignIsoOrigin(String messageId, String endToEndId, String transactionId) {
+        this.isoMessageId = messageId;
+        this.isoEndToEndId = endToEndId;
+        this.isoTransactionId = transactionId;
+    }
 }
\ No newline at end of file
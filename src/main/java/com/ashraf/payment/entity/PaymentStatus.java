@@ -1,30 +1,17 @@
 package com.ashraf.payment.entity;
 
+/**
+ * Lifecycle states of a payment. The allowed moves between them are the {@link PaymentTransition}s.
+ */
 public enum PaymentStatus {
 
-    CREATED {
-        @Override
-        public boolean canAuthorize() { return false; }
-    },
-
-    AUTHORIZED {
-        @Override
-        public boolean canCapture() { return false; }
-    },
-
-    CAPTURED {
-        @Override
-        public boolean canRefund() { return false; }
-    },
-
+    CREATED,
+    AUTHORIZED,
+    CAPTURED,
     FAILED,
     REFUNDED;
 
-    public boolean canAuthorize() { return true; }
-    public boolean canCapture() { return true; }
-    public boolean canRefund() { return true; }
-
     public boolean isFinalState() {
         return this == FAILED || this == REFUNDED;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,26 @@
+package com.ashraf.payment.entity;
+
+/**
+ * The allowed {@link PaymentStatus} moves, each from exactly one source status.
+ * Applied as a single conditional UPDATE so concurrent requests cannot both pass the check.
+ */
+public enum PaymentTransition {
+
+    AUTHORIZE("authorize", PaymentStatus.CREATED, PaymentStatus.AUTHORIZED),
+    CAPTURE("capture", PaymentStatus.AUTHORIZED, PaymentStatus.CAPTURED),
+    REFUND("refund", PaymentStatus.CAPTURED, PaymentStatus.REFUNDED);
+
+    private final String action;
+    private final PaymentStatus from;
+    private final PaymentStatus to;
+
+    PaymentTransition(String action, PaymentStatus from, PaymentStatus to) {
+        this.action = action;
+        this.from = from;
+        this.to = to;
+    }
+
+    public String action() { return action; }
+    public PaymentStatus from() { return from; }
+    public PaymentStatus to() { return to; }
+}
@@ -7,7 +7,14 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "user_sessions")
+@Table(
+        name = "user_sessions",
+        indexes = {
+                @Index(name = "idx_user_sessions_user_active", columnList = "user_id, active"),
+                @Index(name = "idx_user_sessions_active_expires", columnList = "active, expires_at"),
+                @Index(name = "idx_user_sessions_active_invalidated", columnList = "active, invalidated_at")
+        }
+)
 @Getter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @AllArgsConstructor
@@ -15,7 +22,7 @@ import java.util.UUID;
 public class UserSession {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7
     private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -24,8 +31,9 @@ public class UserSession {
     @Column(nullable = false, unique = true)
     private String jti;
 
-    @Column(nullable = false, unique = true)
-    private String refreshToken;
+    // SHA-256 of the refresh token; the raw token is never stored
+    @Column(nullable = false, unique = true, length = 32)
+    private byte[] refreshTokenHash;
 
     @Column(nullable = false)
     private boolean active;
@@ -41,10 +49,6 @@ public class UserSession {
     @Version
     private Long version;
 
-    @Builder.Default
-    @Column(nullable = false)
-    private Boolean refreshTokenUsed = false;
-
     @Column(length = 100)
     private String deviceName;
 
@@ -58,11 +62,6 @@ public class UserSession {
     void onCreate() {
         this.createdAt = LocalDateTime.now();
         this.active = true;
-        this.refreshTokenUsed = false;
-    }
-
-    public void markRefreshTokenUsed() {
-        this.refreshTokenUsed = true;
     }
 
     public void invalidate() {
@@ -73,9 +72,4 @@ public class UserSession {
     public boolean isValid() {
         return active && expiresAt.isAfter(LocalDateTime.now());
     }
-
-    public void rotateRefreshToken(String newToken, LocalDateTime newExpiry) {
-        this.refreshToken = newToken;
-        this.expiresAt = newExpiry;
-    }
 }
\ No newline at end of file
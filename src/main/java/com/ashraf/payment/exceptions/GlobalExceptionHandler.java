@@ -2,12 +2,15 @@ package com.ashraf.payment.exceptions;
 
 import com.ashraf.payment.dto.ApiResult;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.security.authorization.AuthorizationDeniedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.time.Instant;
 import java.util.stream.Collectors;
@@ -74,6 +77,19 @@ public class GlobalExceptionHandler {
         return build(HttpStatus.BAD_REQUEST, ex.getMessage(), request);
     }
 
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiResult<?> handleTypeMismatch(
+            MethodArgumentTypeMismatchException ex,
+            HttpServletRequest request
+    ) {
+        return build(
+                HttpStatus.BAD_REQUEST,
+                "Invalid value for parameter '%s'".formatted(ex.getName()),
+                request
+        );
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ApiResult<?> handleIllegalArgument(
@@ -166,6 +182,83 @@ public class GlobalExceptionHandler {
         return build(HttpStatus.CONFLICT, ex.getMessage(), request);
     }
 
+    @ExceptionHandler(PaymentStateConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ApiResult<?> handlePaymentStateConflict(
+            PaymentStateConflictException ex,
+            HttpServletRequest request
+    ) {
+        return build(HttpStatus.CONFLICT, ex.getMessage(), request);
+    }
+
+    @ExceptionHandler(IsoTransactionConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ApiResult<?> handleIsoTransactionConflict(
+            IsoTransactionConflictException ex,
+            HttpServletRequest request
+    ) {
+        return build(HttpStatus.CONFLICT, ex.getMessage(), request);
+    }
+
+    // =====================================================
+    // 412 - PRECONDITION FAILED
+    // =====================================================
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public ApiResult<?> handlePreconditionFailed(
+            PreconditionFailedException ex,
+            HttpServletRequest request
+    ) {
+        return build(HttpStatus.PRECONDITION_FAILED, ex.getMessage(), request);
+    }
+
+    // =====================================================
+    // 422 - UNPROCESSABLE ENTITY
+    // =====================================================
+
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public ApiResult<?> handleIdempotencyConflict(
+            IdempotencyKeyConflictException ex,
+            HttpServletRequest request
+    ) {
+        return build(HttpStatus.UNPROCESSABLE_ENTITY, ex.getMessage(), request);
+    }
+
+    // =====================================================
+    // 429 - TOO MANY REQUESTS
+    // =====================================================
+
+    @ExceptionHandler(TooManyLoginAttemptsException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ApiResult<?> handleTooManyLoginAttempts(
+            TooManyLoginAttemptsException ex,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) {
+        // Whole seconds, rounded up so a client retrying on time finds a token
+        long seconds = Math.max(1, ex.getRetryAfter().plusNanos(999_999_999).toSeconds());
+
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        return build(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage(), request);
+    }
+
+    // =====================================================
+    // 503 - SERVICE UNAVAILABLE
+    // =====================================================
+
+    @ExceptionHandler(ServiceBusyException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ApiResult<?> handleServiceBusy(
+            ServiceBusyException ex,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        return build(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage(), request);
+    }
+
     // =====================================================
     // 500 - INTERNAL SERVER ERROR
     // =====================================================
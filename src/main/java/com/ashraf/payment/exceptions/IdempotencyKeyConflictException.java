@@ -0,0 +1,7 @@
+package com.ashraf.payment.exceptions;
+
+public class IdempotencyKeyConflictException extends RuntimeException {
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.ashraf.payment.exceptions;
+
+public class IsoTransactionConflictException extends RuntimeException {
+    public IsoTransactionConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.ashraf.payment.exceptions;
+
+public class PaymentStateConflictException extends RuntimeException {
+    public PaymentStateConflictException(String message) {
+        super(message);
+    }
+}
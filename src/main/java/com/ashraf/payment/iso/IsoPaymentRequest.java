@@ -0,0 +1,53 @@
+package com.ashraf.payment.iso;
+
+import com.ashraf.payment.dto.PaymentRequest;
+
+import java.util.UUID;
+
+/**
+ * A payment to create from one pacs.008 transaction, with the identifiers it is stored under
+ * so a pacs.002 can later refer back to the original message and transaction.
+ */
+public record IsoPaymentRequest(
+        PaymentRequest payment,
+        String messageId,
+        String endToEndId,
+        String transactionId
+) {
+
+    // Max35Text in ISO 20022, and the width of the columns they are stored in
+    static final int MAX_ID_LENGTH = 35;
+
+    /**
+     * @param position zero-based index of the transaction within its message
+     */
+    public static IsoPaymentRequest of(UUID ownerId, IsoTransaction transaction, int position) {
+
+        requireMaxLength("MsgId", transaction.messageId());
+        requireMaxLength("EndToEndId", transaction.endToEndId());
+        requireMaxLength("TxId", transaction.transactionId());
+
+        return new IsoPaymentRequest(
+                new PaymentRequest(
+                        transaction.amount(),
+                        transaction.currency(),
+                        IsoReferenceGenerator.reference(ownerId, transaction, position)
+                ),
+                blankToNull(transaction.messageId()),
+                blankToNull(transaction.endToEndId()),
+                blankToNull(transaction.transactionId())
+        );
+    }
+
+    private static void requireMaxLength(String name, String value) {
+        if (value != null && value.length() > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException(
+                    "%s is longer than %d characters".formatted(name, MAX_ID_LENGTH)
+            );
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
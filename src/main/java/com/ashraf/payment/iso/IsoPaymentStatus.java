@@ -0,0 +1,17 @@
+package com.ashraf.payment.iso;
+
+import com.ashraf.payment.entity.PaymentStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * The stored state of one ISO payment, as reported back in a pacs.002.
+ * {@code endToEndId} and {@code transactionId} are as received and may be absent.
+ */
+public record IsoPaymentStatus(
+        String endToEndId,
+        String transactionId,
+        BigDecimal amount,
+        String currency,
+        PaymentStatus status
+) {}
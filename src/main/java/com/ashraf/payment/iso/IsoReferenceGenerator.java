@@ -0,0 +1,67 @@
+package com.ashraf.payment.iso;
+
+import com.ashraf.payment.entity.UuidV7Generator;
+import com.ashraf.payment.security.TokenDigest;
+
+import java.util.UUID;
+
+/**
+ * Payment reference for an ISO credit transfer, derived from the message so that the same
+ * transaction always maps to the same {@code Payment.referenceId} and a resubmission is
+ * recognised as a duplicate.
+ * <p>
+ * The reference is {@code ISO-} and the SHA-256 of the owner's id, the MsgId and the
+ * transaction's key: its {@code TxId}, else its {@code EndToEndId} (unless that is the
+ * {@code NOTPROVIDED} placeholder), else its position in the message. Every part is length
+ * prefixed, so no two different inputs meet, and the owner is part of it because a MsgId is
+ * only unique per sender. Without a MsgId nothing identifies the message, so a fresh
+ * time-ordered UUID is used and no deduplication happens. Either way the reference has a
+ * fixed length, however long the message's ids are.
+ */
+public final class IsoReferenceGenerator {
+
+    private static final String PREFIX = "ISO-";
+    private static final String NOT_PROVIDED = "NOTPROVIDED";
+
+    private IsoReferenceGenerator() {}
+
+    /**
+     * @param position zero-based index of the transaction within its message
+     */
+    public static String reference(UUID ownerId, IsoTransaction transaction, int position) {
+
+        if (isBlank(transaction.messageId())) {
+            return PREFIX + UuidV7Generator.nextUuid();
+        }
+
+        String key = new StringBuilder()
+                .append(field(ownerId.toString()))
+                .append(field(transaction.messageId()))
+                .append(transactionKey(transaction, position))
+                .toString();
+
+        return PREFIX + TokenDigest.sha256Hex(key);
+    }
+
+    private static String transactionKey(IsoTransaction transaction, int position) {
+
+        if (!isBlank(transaction.transactionId())) {
+            return field("TxId") + field(transaction.transactionId());
+        }
+
+        if (!isBlank(transaction.endToEndId()) && !NOT_PROVIDED.equals(transaction.endToEndId())) {
+            return field("EndToEndId") + field(transaction.endToEndId());
+        }
+
+        return field("position") + field(Integer.toString(position));
+    }
+
+    // <length>:<value>, so the boundaries between parts cannot be moved
+    private static String field(String value) {
+        return value.length() + ":" + value;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
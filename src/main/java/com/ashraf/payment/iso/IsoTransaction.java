@@ -0,0 +1,15 @@
+package com.ashraf.payment.iso;
+
+import java.math.BigDecimal;
+
+/**
+ * The fields this service reads from one pacs.008 credit transfer.
+ * {@code endToEndId} and {@code transactionId} come from {@code PmtId} and may be absent.
+ */
+public record IsoTransaction(
+        String messageId,
+        String endToEndId,
+        String transactionId,
+        BigDecimal amount,
+        String currency
+) {}
@@ -0,0 +1,151 @@
+package com.ashraf.payment.iso;
+
+import com.ashraf.payment.entity.PaymentStatus;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Streaming writer for the pacs.002 status report of one pacs.008 message.
+ * <p>
+ * The group header and {@code OrgnlGrpInfAndSts} are written on {@link #open}, then one
+ * {@code TxInfAndSts} per {@link #write} call, straight to the output. Nothing is kept per
+ * transaction, so reports of any size are produced in constant memory. {@link #close} ends the
+ * document but leaves the underlying stream open.
+ */
+public final class Pacs002Writer implements AutoCloseable {
+
+    static final String NAMESPACE = "urn:iso:std:iso:20022:tech:xsd:pacs.002.001.10";
+
+    private static final String ORIGINAL_MESSAGE_NAME = "pacs.008.001.08";
+
+    private static final XMLOutputFactory FACTORY = XMLOutputFactory.newFactory();
+
+    private final XMLStreamWriter writer;
+    private final String originalMessageId;
+    private long transactions;
+
+    private Pacs002Writer(XMLStreamWriter writer, String originalMessageId) {
+        this.writer = writer;
+        this.originalMessageId = originalMessageId;
+    }
+
+    public static Pacs002Writer open(
+            OutputStream out,
+            String messageId,
+            String originalMessageId,
+            Instant createdAt
+    ) {
+
+        try {
+            Pacs002Writer pacs002 = new Pacs002Writer(
+                    FACTORY.createXMLStreamWriter(out, "UTF-8"),
+                    originalMessageId
+            );
+            pacs002.writeHeader(messageId, createdAt);
+            return pacs002;
+        } catch (XMLStreamException e) {
+            throw failed(e);
+        }
+    }
+
+    public void write(IsoPaymentStatus payment) {
+
+        try {
+            writer.writeStartElement("TxInfAndSts");
+
+            if (payment.endToEndId() != null) {
+                element("OrgnlEndToEndId", payment.endToEndId());
+            }
+
+            if (payment.transactionId() != null) {
+                element("OrgnlTxId", payment.transactionId());
+            }
+
+            element("TxSts", statusCode(payment.status()));
+
+            writer.writeStartElement("OrgnlTxRef");
+            writer.writeStartElement("IntrBkSttlmAmt");
+            writer.writeAttribute("Ccy", payment.currency());
+            writer.writeCharacters(payment.amount().toPlainString());
+            writer.writeEndElement();
+            writer.writeEndElement();
+
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw failed(e);
+        }
+
+        transactions++;
+    }
+
+    public long transactions() {
+        return transactions;
+    }
+
+    /**
+     * ISO 20022 transaction status for a stored payment: accepted for technical processing
+     * once received, accepted for settlement once authorized, settled once captured.
+     */
+    public static String statusCode(PaymentStatus status) {
+        return switch (status) {
+            case CREATED -> "ACTC";
+            case AUTHORIZED -> "ACSP";
+            case CAPTURED, REFUNDED -> "ACSC";
+            case FAILED -> "RJCT";
+        };
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw failed(e);
+        }
+    }
+
+    private void writeHeader(String messageId, Instant createdAt) throws XMLStreamException {
+
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.setDefaultNamespace(NAMESPACE);
+        writer.writeStartElement(NAMESPACE, "Document");
+        writer.writeDefaultNamespace(NAMESPACE);
+        writer.writeStartElement("FIToFIPmtStsRpt");
+
+        writer.writeStartElement("GrpHdr");
+        element("MsgId", messageId);
+        element("CreDtTm", createdAt.truncatedTo(ChronoUnit.SECONDS).toString());
+        writer.writeEndElement();
+
+        writer.writeStartElement("OrgnlGrpInfAndSts");
+        element("OrgnlMsgId", originalMessageId);
+        element("OrgnlMsgNmId", ORIGINAL_MESSAGE_NAME);
+        writer.writeEndElement();
+    }
+
+    private void element(String name, String text) {
+        try {
+            writer.writeStartElement(name);
+            writer.writeCharacters(text);
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw failed(e);
+        }
+    }
+
+    // The writer only fails when the output does, e.g. a client that disconnected
+    private static UncheckedIOException failed(XMLStreamException e) {
+        return new UncheckedIOException(new IOException("Failed to write pacs.002", e));
+    }
+}
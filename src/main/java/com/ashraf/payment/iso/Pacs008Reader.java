@@ -0,0 +1,234 @@
+package com.ashraf.payment.iso;
+
+import com.ashraf.payment.exceptions.InvalidIsoStructureException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Pull parser for pacs.008 that reads {@code GrpHdr/MsgId} and, per {@code CdtTrfTxInf},
+ * the {@code PmtId} identifiers and the {@code IntrBkSttlmAmt} with its {@code Ccy}. Every other
+ * element is skipped without building objects for it, and transactions are handed out one at a
+ * time, so memory does not grow with the number of transactions in the message.
+ * <p>
+ * DTDs and external entities are disabled, so XXE and entity-expansion payloads fail
+ * to parse instead of being resolved. Errors match the former JAXB binding:
+ * {@link InvalidIsoStructureException} for a wrong shape, {@link IllegalArgumentException}
+ * for a missing amount or currency.
+ */
+public final class Pacs008Reader implements AutoCloseable {
+
+    static final String NAMESPACE = "urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08";
+
+    private static final XMLInputFactory FACTORY = hardenedFactory();
+
+    private final XMLStreamReader reader;
+    private String messageId;
+    private boolean exhausted;
+
+    private Pacs008Reader(XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Opens the message and positions the reader inside {@code FIToFICstmrCdtTrf}.
+     */
+    public static Pacs008Reader open(InputStream xml) {
+
+        Pacs008Reader pacs008 = null;
+
+        try {
+            pacs008 = new Pacs008Reader(FACTORY.createXMLStreamReader(xml));
+            pacs008.enterCreditTransfer();
+            return pacs008;
+        } catch (XMLStreamException e) {
+            closeQuietly(pacs008);
+            throw invalidStructure();
+        } catch (RuntimeException e) {
+            closeQuietly(pacs008);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the first transaction only; the rest of the message is not parsed.
+     */
+    public static IsoTransaction readFirst(InputStream xml) {
+        try (Pacs008Reader reader = open(xml)) {
+            return reader.next().orElseThrow(Pacs008Reader::invalidStructure);
+        }
+    }
+
+    /**
+     * Next credit transfer, or empty after the last one. A transaction without amount or
+     * currency throws {@link IllegalArgumentException} once it has been read completely,
+     * so the caller may record the failure and carry on with the next one.
+     */
+    public Optional<IsoTransaction> next() {
+
+        if (exhausted) {
+            return Optional.empty();
+        }
+
+        try {
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+
+                if (isElement("GrpHdr")) {
+                    messageId = readMessageId();
+                } else if (isElement("CdtTrfTxInf")) {
+                    return Optional.of(readTransaction());
+                } else {
+                    skipElement();
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw invalidStructure();
+        }
+
+        exhausted = true;
+        return Optional.empty();
+    }
+
+    /**
+     * {@code GrpHdr/MsgId}; known once the group header has been passed, which in a valid
+     * message is before the first transaction.
+     */
+    public String messageId() {
+        return messageId;
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            // nothing left to release
+        }
+    }
+
+    private void enterCreditTransfer() throws XMLStreamException {
+
+        reader.nextTag();
+
+        if (!isElement("Document")) {
+            throw invalidStructure();
+        }
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (isElement("FIToFICstmrCdtTrf")) {
+                return;
+            }
+            skipElement();
+        }
+
+        throw invalidStructure();
+    }
+
+    private String readMessageId() throws XMLStreamException {
+
+        String value = null;
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (isElement("MsgId")) {
+                value = reader.getElementText().strip();
+            } else {
+                skipElement();
+            }
+        }
+
+        return value;
+    }
+
+    private IsoTransaction readTransaction() throws XMLStreamException {
+
+        String amount = null;
+        String currency = null;
+        String endToEndId = null;
+        String transactionId = null;
+
+        // Validate only after the whole element is consumed, so a bad transaction can be skipped
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (isElement("IntrBkSttlmAmt")) {
+                currency = reader.getAttributeValue(null, "Ccy");
+                amount = reader.getElementText().strip();
+            } else if (isElement("PmtId")) {
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    if (isElement("EndToEndId")) {
+                        endToEndId = reader.getElementText().strip();
+                    } else if (isElement("TxId")) {
+                        transactionId = reader.getElementText().strip();
+                    } else {
+                        skipElement();
+                    }
+                }
+            } else {
+                skipElement();
+            }
+        }
+
+        if (amount == null || amount.isEmpty()) {
+            throw new IllegalArgumentException("Missing amount");
+        }
+
+        if (currency == null) {
+            throw new IllegalArgumentException("Missing currency");
+        }
+
+        return new IsoTransaction(messageId, endToEndId, transactionId, parseAmount(amount), currency);
+    }
+
+    private static BigDecimal parseAmount(String value) {
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount");
+        }
+    }
+
+    private boolean isElement(String localName) {
+        return localName.equals(reader.getLocalName())
+                && NAMESPACE.equals(reader.getNamespaceURI());
+    }
+
+    // Called on a START_ELEMENT; returns on its matching END_ELEMENT
+    private void skipElement() throws XMLStreamException {
+
+        int depth = 1;
+
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static InvalidIsoStructureException invalidStructure() {
+        return new InvalidIsoStructureException("Invalid ISO 20022 structure");
+    }
+
+    private static void closeQuietly(Pacs008Reader reader) {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    private static XMLInputFactory hardenedFactory() {
+
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+
+        return factory;
+    }
+}
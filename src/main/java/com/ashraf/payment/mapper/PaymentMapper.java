@@ -17,7 +17,8 @@ public final class PaymentMapper {
                 payment.getCreatedAt(),
                 payment.getUpdatedAt(),
                 payment.getUser().getId(),
-                payment.getUser().getUsername()
+                payment.getUser().getUsername(),
+                payment.getVersion()
         );
     }
 }
\ No newline at end of file
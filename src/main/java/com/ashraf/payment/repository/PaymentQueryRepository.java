@@ -0,0 +1,24 @@
+package com.ashraf.payment.repository;
+
+import com.ashraf.payment.dto.PaymentCursor;
+import com.ashraf.payment.dto.PaymentResponse;
+import com.ashraf.payment.entity.PaymentStatus;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface PaymentQueryRepository {
+
+    /**
+     * Newest-first keyset page of a user's payments, strictly after {@code after} when given.
+     * Status and currency filters are optional. Rows are projected straight into
+     * {@link PaymentResponse} with the owner joined once; no entities are loaded.
+     */
+    List<PaymentResponse> findResponsePage(
+            UUID userId,
+            PaymentStatus status,
+            String currency,
+            PaymentCursor after,
+            int limit
+    );
+}
@@ -0,0 +1,81 @@
+package com.ashraf.payment.repository;
+
+import com.ashraf.payment.dto.PaymentCursor;
+import com.ashraf.payment.dto.PaymentResponse;
+import com.ashraf.payment.entity.Payment;
+import com.ashraf.payment.entity.PaymentStatus;
+import com.ashraf.payment.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+class PaymentQueryRepositoryImpl implements PaymentQueryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<PaymentResponse> findResponsePage(
+            UUID userId,
+            PaymentStatus status,
+            String currency,
+            PaymentCursor after,
+            int limit
+    ) {
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<PaymentResponse> query = cb.createQuery(PaymentResponse.class);
+        Root<Payment> payment = query.from(Payment.class);
+        Join<Payment, User> user = payment.join("user");
+
+        Path<LocalDateTime> createdAt = payment.get("createdAt");
+        Path<UUID> id = payment.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.equal(payment.get("user").get("id"), userId));
+
+        if (status != null) {
+            predicates.add(cb.equal(payment.get("status"), status));
+        }
+
+        if (currency != null) {
+            predicates.add(cb.equal(payment.get("currency"), currency));
+        }
+
+        // (createdAt, id) < (cursor.createdAt, cursor.id)
+        if (after != null) {
+            predicates.add(cb.or(
+                    cb.lessThan(createdAt, after.createdAt()),
+                    cb.and(
+                            cb.equal(createdAt, after.createdAt()),
+                            cb.lessThan(id, after.id())
+                    )
+            ));
+        }
+
+        query.select(cb.construct(
+                        PaymentResponse.class,
+                        id,
+                        payment.get("amount"),
+                        payment.get("currency"),
+                        payment.get("status"),
+                        payment.get("referenceId"),
+                        createdAt,
+                        payment.get("updatedAt"),
+                        user.get("id"),
+                        user.get("username"),
+                        payment.get("version")
+                ))
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(cb.desc(createdAt), cb.desc(id));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -1,12 +1,189 @@
 package com.ashraf.payment.repository;
 
+import com.ashraf.payment.dto.PaymentResponse;
 import com.ashraf.payment.entity.Payment;
+import com.ashraf.payment.entity.PaymentStatus;
+import com.ashraf.payment.iso.IsoPaymentStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
-public interface PaymentRepository extends JpaRepository<Payment, UUID> {
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
-    List<Payment> findByUserId(UUID userId);
-}
\ No newline at end of file
+public interface PaymentRepository extends JpaRepository<Payment, UUID>, PaymentQueryRepository {
+
+    @Query("""
+            select new com.ashraf.payment.dto.PaymentResponse(
+                       p.id, p.amount, p.currency, p.status, p.referenceId,
+                       p.createdAt, p.updatedAt, u.id, u.username, p.version)
+              from Payment p
+              join p.user u
+             where p.id = :id
+            """)
+    Optional<PaymentResponse> findResponseById(@Param("id") UUID id);
+
+    @Query("""
+            select new com.ashraf.payment.dto.PaymentResponse(
+                       p.id, p.amount, p.currency, p.status, p.referenceId,
+                       p.createdAt, p.updatedAt, u.id, u.username, p.version)
+              from Payment p
+              join p.user u
+             where p.referenceId = :referenceId
+            """)
+    Optional<PaymentResponse> findResponseByReferenceId(@Param("referenceId") String referenceId);
+
+    @Query("select p.version from Payment p where p.id = :id and p.user.id = :userId")
+    Optional<Long> findVersion(@Param("id") UUID id, @Param("userId") UUID userId);
+
+    /**
+     * Moves the payment from {@code from} to {@code to} if it belongs to {@code userId} and,
+     * when {@code version} is given, is still at that version.
+     * Returns 0 when the payment is missing, not owned, in another status or at another version.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Payment p
+               set p.status = :to,
+                   p.version = p.version + 1,
+                   p.updatedAt = :now
+             where p.id = :id
+               and p.user.id = :userId
+               and p.status = :from
+               and (:version is null or p.version = :version)
+            """)
+    int applyTransition(
+            @Param("id") UUID id,
+            @Param("userId") UUID userId,
+            @Param("version") Long version,
+            @Param("from") PaymentStatus from,
+            @Param("to") PaymentStatus to,
+            @Param("now") LocalDateTime now
+    );
+
+    /**
+     * Locks the given payments that belong to {@code userId} and are still in {@code status}.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+            select p.id
+              from Payment p
+             where p.id in :ids
+               and p.user.id = :userId
+               and p.status = :status
+            """)
+    List<UUID> lockIdsInStatus(
+            @Param("ids") Collection<UUID> ids,
+            @Param("userId") UUID userId,
+            @Param("status") PaymentStatus status
+    );
+
+    /**
+     * Locks the oldest of {@code userId}'s payments in {@code status} created before {@code before}.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+            select p.id
+              from Payment p
+             where p.user.id = :userId
+               and p.status = :status
+               and p.createdAt < :before
+             order by p.createdAt, p.id
+            """)
+    List<UUID> lockIdsInStatusCreatedBefore(
+            @Param("userId") UUID userId,
+            @Param("status") PaymentStatus status,
+            @Param("before") LocalDateTime before,
+            Limit limit
+    );
+
+    @Query("select p.id from Payment p where p.id in :ids and p.user.id = :userId")
+    List<UUID> findOwnedIds(@Param("ids") Collection<UUID> ids, @Param("userId") UUID userId);
+
+    /**
+     * Moves already locked payments; see {@link #lockIdsInStatus}. The source status is checked
+     * again so a row can never be moved twice, even by a caller that did not lock it.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Payment p
+               set p.status = :to,
+                   p.version = p.version + 1,
+                   p.updatedAt = :now
+             where p.id in :ids
+               and p.status = :from
+            """)
+    int applyTransitionByIds(
+            @Param("ids") Collection<UUID> ids,
+            @Param("from") PaymentStatus from,
+            @Param("to") PaymentStatus to,
+            @Param("now") LocalDateTime now
+    );
+
+    boolean existsByReferenceId(String referenceId);
+
+    @Query("select p.referenceId from Payment p where p.referenceId in :referenceIds")
+    Set<String> findExistingReferenceIds(@Param("referenceIds") Collection<String> referenceIds);
+
+    /**
+     * Cursor-backed stream for exports; must be consumed inside a transaction and closed.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select p
+              from Payment p
+              join fetch p.user
+             where p.user.id = :userId
+               and p.createdAt >= :from
+               and p.createdAt < :to
+             order by p.createdAt, p.id
+            """)
+    Stream<Payment> streamForExport(
+            @Param("userId") UUID userId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+
+    @Query("""
+            select count(p) > 0
+              from Payment p
+             where p.user.id = :userId
+               and p.isoMessageId = :messageId
+            """)
+    boolean existsByIsoMessage(@Param("userId") UUID userId, @Param("messageId") String messageId);
+
+    /**
+     * Status of {@code userId}'s payments created from the pacs.008 {@code messageId},
+     * in creation order, for pacs.002 reports.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.ashraf.payment.iso.IsoPaymentStatus(
+                       p.isoEndToEndId, p.isoTransactionId, p.amount, p.currency, p.status)
+              from Payment p
+             where p.user.id = :userId
+               and p.isoMessageId = :messageId
+             order by p.id
+            """)
+    Stream<IsoPaymentStatus> streamIsoStatuses(@Param("userId") UUID userId, @Param("messageId") String messageId);
+}
@@ -1,8 +1,14 @@
 package com.ashraf.payment.repository;
 
+import com.ashraf.payment.dto.SessionIdentity;
 import com.ashraf.payment.entity.UserSession;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -11,7 +17,78 @@ public interface UserSessionRepository extends JpaRepository<UserSession, UUID>
 
     Optional<UserSession> findByJtiAndActiveTrue(String jti);
 
-    Optional<UserSession> findByRefreshTokenAndActiveTrue(String refreshToken);
+    /**
+     * Compare-and-set rotation: swaps in the new digest and expiry only while the
+     * presented digest is still the current one of the given active, unexpired session.
+     * Returns 1 when rotated, 0 when the presented token is no longer current.
+     */
+    @Modifying
+    @Query("""
+            update UserSession s
+               set s.refreshTokenHash = :newHash,
+                   s.expiresAt = :newExpiry,
+                   s.version = s.version + 1
+             where s.jti = :jti
+               and s.refreshTokenHash = :currentHash
+               and s.active = true
+               and s.expiresAt > :now
+            """)
+    int rotateRefreshToken(
+            @Param("jti") String jti,
+            @Param("currentHash") byte[] currentHash,
+            @Param("newHash") byte[] newHash,
+            @Param("newExpiry") LocalDateTime newExpiry,
+            @Param("now") LocalDateTime now
+    );
 
-    List<UserSession> findByUserIdAndActiveTrue(UUID userId);
-}
\ No newline at end of file
+    @Query("""
+            select new com.ashraf.payment.dto.SessionIdentity(s.jti, u.id, u.role)
+              from UserSession s
+              join s.user u
+             where s.refreshTokenHash = :hash
+            """)
+    Optional<SessionIdentity> findIdentityByRefreshTokenHash(@Param("hash") byte[] hash);
+
+    /**
+     * The user of the session, when the presented digest is not its current token,
+     * i.e. the token was rotated out of that session at some point.
+     */
+    @Query("select s.user.id from UserSession s where s.jti = :jti and s.refreshTokenHash <> :hash")
+    Optional<UUID> findUserIdBySupersededRefreshToken(@Param("jti") String jti, @Param("hash") byte[] hash);
+
+    /**
+     * Deactivates every active session of a user in one statement.
+     * The version is bumped so concurrent optimistic writes still conflict.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update UserSession s
+               set s.active = false,
+                   s.invalidatedAt = :now,
+                   s.version = s.version + 1
+             where s.user.id = :userId
+               and s.active = true
+            """)
+    int invalidateAllByUserId(@Param("userId") UUID userId, @Param("now") LocalDateTime now);
+
+    @Query("select s.id from UserSession s where s.active = true and s.expiresAt < :now")
+    List<UUID> findExpiredActiveIds(@Param("now") LocalDateTime now, Limit limit);
+
+    @Query("select s.id from UserSession s where s.active = false and s.invalidatedAt < :cutoff")
+    List<UUID> findInactiveIdsBefore(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    @Modifying
+    @Query("""
+            update UserSession s
+               set s.active = false,
+                   s.invalidatedAt = :now,
+                   s.version = s.version + 1
+             where s.id in :ids
+               and s.active = true
+            """)
+    int expireByIds(@Param("ids") List<UUID> ids, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("delete from UserSession s where s.id in :ids")
+    int deleteByIds(@Param("ids") List<UUID> ids);
+}
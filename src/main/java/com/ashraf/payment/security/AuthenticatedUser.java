@@ -0,0 +1,38 @@
+package com.ashraf.payment.security;
+
+import com.ashraf.payment.entity.UserRole;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.UUID;
+
+/**
+ * Principal built from the access token claims alone, without loading the users row.
+ * A role change reaches the token on the next refresh; revoking the user's
+ * sessions (logout-all) forces it immediately.
+ */
+public record AuthenticatedUser(UUID id, UserRole role) implements AuthenticatedPrincipal {
+
+    @Override
+    public String getName() {
+        return id.toString();
+    }
+
+    public boolean isAdmin() {
+        return role == UserRole.ROLE_ADMIN;
+    }
+
+    public static AuthenticatedUser current() {
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication == null
+                || !(authentication.getPrincipal() instanceof AuthenticatedUser user)) {
+            throw new AuthenticationCredentialsNotFoundException("No authenticated user");
+        }
+
+        return user;
+    }
+}
@@ -1,9 +1,7 @@
 package com.ashraf.payment.security;
 
-import com.ashraf.payment.entity.User;
-import com.ashraf.payment.repository.UserRepository;
+import com.ashraf.payment.entity.UserRole;
 import com.ashraf.payment.service.JwtService;
-import com.ashraf.payment.repository.UserSessionRepository;
 import io.jsonwebtoken.Claims;
 import jakarta.servlet.*;
 import jakarta.servlet.http.*;
@@ -23,9 +21,8 @@ import java.util.UUID;
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private final UserRepository userRepository;
     private final JwtService jwtService;
-    private final UserSessionRepository sessionRepository;
+    private final SessionStateCache sessionStateCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -42,35 +39,36 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         String token = header.substring(7);
 
-        // ✅ Validate JWT signature + expiration
-        if (!jwtService.isValid(token)) {
-            throw new BadCredentialsException("Invalid or expired token");
-        }
-
-        Claims claims = jwtService.parse(token);
+        // ✅ Validate JWT signature + expiration (verified once, cached by token digest)
+        Claims claims = jwtService.verify(token)
+                .orElseThrow(() -> new BadCredentialsException("Invalid or expired token"));
 
         String jti = claims.getId();
         UUID userId = UUID.fromString(claims.getSubject());
 
-        // ✅ Check session in DB
-        var session = sessionRepository
-                .findByJtiAndActiveTrue(jti)
-                .orElse(null);
+        // ✅ Check session state (cached, evicted on revocation)
+        if (!sessionStateCache.isActive(jti)) {
+            SecurityContextHolder.clearContext();
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // ✅ Identity and role come from the token itself, no users lookup
+        String role = claims.get(JwtService.ROLE_CLAIM, String.class);
 
-        if (session == null || !session.isValid()) {
+        if (role == null) {
             SecurityContextHolder.clearContext();
             filterChain.doFilter(request, response);
             return;
         }
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        AuthenticatedUser principal = new AuthenticatedUser(userId, UserRole.valueOf(role));
 
         UsernamePasswordAuthenticationToken auth =
                 new UsernamePasswordAuthenticationToken(
-                        user.getId().toString(),
+                        principal,
                         null,
-                        List.of(new SimpleGrantedAuthority(user.getRole().name()))
+                        List.of(new SimpleGrantedAuthority(role))
                 );
 
         SecurityContextHolder.getContext().setAuthentication(auth);
@@ -0,0 +1,133 @@
+package com.ashraf.payment.security;
+
+import com.ashraf.payment.config.LoginThrottleProperties;
+import com.ashraf.payment.exceptions.TooManyLoginAttemptsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory token buckets keyed by username and by client IP.
+ * Buckets are updated with compare-and-set, never locked, and idle buckets
+ * are evicted so memory stays bounded by {@code maxTrackedKeys}.
+ */
+@Component
+public class LoginRateLimiter {
+
+    private final LoginThrottleProperties properties;
+    private final Cache<String, TokenBucket> buckets;
+
+    private final Counter rejectedByUsername;
+    private final Counter rejectedByIp;
+
+    public LoginRateLimiter(LoginThrottleProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+
+        Duration idle = max(properties.usernameRefillPeriod(), properties.ipRefillPeriod());
+
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.maxTrackedKeys())
+                .expireAfterAccess(idle)
+                .build();
+
+        this.rejectedByUsername = Counter.builder("auth.login.throttled")
+                .tag("key", "username")
+                .register(meterRegistry);
+        this.rejectedByIp = Counter.builder("auth.login.throttled")
+                .tag("key", "ip")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @throws TooManyLoginAttemptsException when either bucket is empty, carrying the time
+     *                                       until that bucket has a token again
+     */
+    public void acquire(String username, String ip) {
+
+        if (!properties.enabled()) {
+            return;
+        }
+
+        if (ip != null) {
+
+            long waitNanos = tryConsume("ip:" + ip, properties.ipCapacity(), properties.ipRefillPeriod());
+
+            if (waitNanos > 0) {
+                rejectedByIp.increment();
+                throw tooManyAttempts(waitNanos);
+            }
+        }
+
+        if (username != null) {
+
+            long waitNanos = tryConsume(
+                    "user:" + username.toLowerCase(Locale.ROOT),
+                    properties.usernameCapacity(),
+                    properties.usernameRefillPeriod()
+            );
+
+            if (waitNanos > 0) {
+                rejectedByUsername.increment();
+                throw tooManyAttempts(waitNanos);
+            }
+        }
+    }
+
+    // 0 when a token was taken, otherwise the nanoseconds until one is available
+    private long tryConsume(String key, int capacity, Duration refillPeriod) {
+        return buckets.get(key, k -> new TokenBucket(capacity))
+                .tryConsume(capacity, refillPeriod.toNanos());
+    }
+
+    private static TooManyLoginAttemptsException tooManyAttempts(long waitNanos) {
+        return new TooManyLoginAttemptsException(
+                "Too many login attempts, please retry later",
+                Duration.ofNanos(waitNanos)
+        );
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    static final class TokenBucket {
+
+        private final AtomicReference<State> state;
+
+        TokenBucket(int capacity) {
+            this.state = new AtomicReference<>(new State(capacity, System.nanoTime()));
+        }
+
+        long tryConsume(int capacity, long refillNanos) {
+
+            long now = System.nanoTime();
+
+            while (true) {
+
+                State current = state.get();
+
+                long elapsed = Math.max(0, now - current.updatedAt());
+                double tokens = Math.min(
+                        capacity,
+                        current.tokens() + (double) elapsed * capacity / refillNanos
+                );
+
+                if (tokens < 1) {
+                    return Math.max(1, (long) Math.ceil((1 - tokens) * refillNanos / capacity));
+                }
+
+                if (state.compareAndSet(current, new State(tokens - 1, Math.max(now, current.updatedAt())))) {
+                    return 0;
+                }
+            }
+        }
+
+        private record State(double tokens, long updatedAt) {}
+    }
+}
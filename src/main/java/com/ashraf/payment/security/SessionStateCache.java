@@ -0,0 +1,100 @@
+package com.ashraf.payment.security;
+
+import com.ashraf.payment.config.SessionProperties;
+import com.ashraf.payment.entity.UserSession;
+import com.ashraf.payment.repository.UserSessionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Bounded, TTL-based cache of session state keyed by JTI, so the JWT filter
+ * does not hit user_sessions on every request.
+ * Revocations evict immediately and again once the revoking transaction commits.
+ */
+@Component
+public class SessionStateCache {
+
+    private final UserSessionRepository repository;
+    private final Cache<String, SessionState> states;
+
+    public SessionStateCache(
+            UserSessionRepository repository,
+            SessionProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.repository = repository;
+        this.states = Caffeine.newBuilder()
+                .maximumSize(properties.cache().maximumSize())
+                .expireAfterWrite(properties.cache().ttl())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, states, "session-state");
+    }
+
+    public boolean isActive(String jti) {
+        // Tokens without a JTI cannot be tied to a session
+        if (jti == null) {
+            return false;
+        }
+        return states.get(jti, this::load).isValid();
+    }
+
+    public void evict(String jti) {
+        states.invalidate(jti);
+        afterCommit(() -> states.invalidate(jti));
+    }
+
+    public void evictUser(UUID userId) {
+        Runnable eviction = () -> states.asMap()
+                .values()
+                .removeIf(state -> userId.equals(state.userId()));
+
+        eviction.run();
+        afterCommit(eviction);
+    }
+
+    private SessionState load(String jti) {
+        return repository.findByJtiAndActiveTrue(jti)
+                .map(SessionState::of)
+                .orElse(SessionState.REVOKED);
+    }
+
+    private void afterCommit(Runnable action) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    record SessionState(UUID userId, LocalDateTime expiresAt) {
+
+        static final SessionState REVOKED = new SessionState(null, LocalDateTime.MIN);
+
+        static SessionState of(UserSession session) {
+            if (!session.isValid()) {
+                return REVOKED;
+            }
+            return new SessionState(session.getUser().getId(), session.getExpiresAt());
+        }
+
+        boolean isValid() {
+            return expiresAt.isAfter(LocalDateTime.now());
+        }
+    }
+}
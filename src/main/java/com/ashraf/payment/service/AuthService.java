@@ -4,15 +4,18 @@ import com.ashraf.payment.config.JwtProperties;
 import com.ashraf.payment.dto.*;
 import com.ashraf.payment.entity.User;
 import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.exceptions.InvalidCredentialsException;
+import com.ashraf.payment.exceptions.RefreshTokenReuseException;
 import com.ashraf.payment.repository.UserRepository;
 import com.ashraf.payment.repository.UserSessionRepository;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -20,7 +23,7 @@ import java.time.LocalDateTime;
 public class AuthService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final JwtService jwtService;
     private final SessionService sessionService;
     private final JwtProperties properties;
@@ -34,7 +37,7 @@ public class AuthService {
 
         userRepository.save(User.builder()
                 .username(request.username())
-                .password(passwordEncoder.encode(request.password()))
+                .password(passwordHashingService.encode(request.password()))
                 .role(UserRole.ROLE_USER)
                 .build());
     }
@@ -47,11 +50,12 @@ public class AuthService {
         User user = userRepository.findByUsername(request.username())
                 .orElseThrow(() -> new RuntimeException("Invalid credentials"));
 
-        if (!passwordEncoder.matches(request.password(), user.getPassword())) {
+        if (!passwordHashingService.matches(request.password(), user.getPassword())) {
             throw new RuntimeException("Invalid credentials");
         }
 
-        String refreshToken = jwtService.generateRefreshToken(user.getId());
+        String jti = UUID.randomUUID().toString();
+        String refreshToken = jwtService.generateRefreshToken(user.getId(), jti);
 
         String deviceName = httpRequest.getHeader("X-Device-Name");
         String userAgent = httpRequest.getHeader("User-Agent");
@@ -60,6 +64,7 @@ public class AuthService {
 
         var session = sessionService.createSession(
                 user,
+                jti,
                 refreshToken,
                 properties.refreshExpiration(),
                 deviceName,
@@ -67,38 +72,38 @@ public class AuthService {
                 userAgent
         );
 
-        String accessToken = jwtService.generateAccessToken(user.getId(), session.getJti());
+        String accessToken = jwtService.generateAccessToken(user.getId(), session.getJti(), user.getRole());
 
         return new AuthResponse(accessToken, refreshToken);
     }
 
+    @Transactional(noRollbackFor = RefreshTokenReuseException.class)
     public AuthResponse refresh(String refreshToken) {
 
-        var session = sessionService.validateRefreshToken(refreshToken);
+        Claims claims = jwtService.verify(refreshToken)
+                .filter(verified -> verified.get(JwtService.SESSION_CLAIM, String.class) != null)
+                .orElseThrow(() -> new InvalidCredentialsException("Invalid or expired refresh token"));
 
-        // 🚨 REUSE DETECTION
-        if (session.getRefreshTokenUsed()) {
+        UUID userId = UUID.fromString(claims.getSubject());
+        String sessionJti = claims.get(JwtService.SESSION_CLAIM, String.class);
 
-            // Invalidate ALL sessions for security
-            sessionService.logoutAll(session.getUser().getId());
+        // Generate new refresh token, in the same session
+        String newRefresh = jwtService.generateRefreshToken(userId, sessionJti);
 
-            throw new SecurityException("Refresh token reuse detected");
-        }
-
-        // Mark current refresh token as used
-        session.markRefreshTokenUsed();
-
-        // Generate new refresh token
-        String newRefresh = jwtService.generateRefreshToken(session.getUser().getId());
-
-        // Sliding session logic
-        session.rotateRefreshToken(
+        // Sliding session logic, rotated only if the presented token is still current
+        SessionIdentity session = sessionService.rotateRefreshToken(
+                sessionJti,
+                refreshToken,
                 newRefresh,
                 LocalDateTime.now().plusSeconds(properties.refreshExpiration())
         );
 
-        String newAccess =
-                jwtService.generateAccessToken(session.getUser().getId(), session.getJti());
+        // Role is re-read here, so role changes reach the next access token
+        String newAccess = jwtService.generateAccessToken(
+                session.userId(),
+                session.jti(),
+                session.role()
+        );
 
         return new AuthResponse(newAccess, newRefresh);
     }
@@ -0,0 +1,234 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.config.IdempotencyProperties;
+import com.ashraf.payment.dto.PaymentResponse;
+import com.ashraf.payment.entity.IdempotencyRecord;
+import com.ashraf.payment.exceptions.IdempotencyKeyConflictException;
+import com.ashraf.payment.repository.IdempotencyRecordRepository;
+import com.ashraf.payment.repository.PaymentRepository;
+import com.ashraf.payment.security.AuthenticatedUser;
+import com.ashraf.payment.security.TokenDigest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Makes payment creation safe to retry under an {@code Idempotency-Key}.
+ * <p>
+ * The first request for a key runs the action and stores the key with the payment id in one
+ * transaction, which the action joins unless it commits on its own. Concurrent duplicates in
+ * this instance wait on that first request instead of running their own transaction; later
+ * retries are answered from a bounded cache, or from the stored record once the cache has let
+ * go of the key. Reusing a key with a different request body is rejected.
+ * <p>
+ * An action that commits on its own, like {@code createIsoPayment}, can leave a payment without
+ * a stored key if saving the record fails. Such an action must be safe to run again: the ISO one
+ * derives the payment reference from the message, so the retry finds that payment and stores the
+ * key for it. A pacs.008 without a MsgId has nothing to derive it from and gets a new payment.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository repository;
+    private final PaymentRepository paymentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+
+    private final Cache<Key, CompletableFuture<Outcome>> outcomes;
+    private final Counter cachedReplays;
+    private final Counter storedReplays;
+
+    public IdempotencyService(
+            IdempotencyRecordRepository repository,
+            PaymentRepository paymentRepository,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper,
+            IdempotencyProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.repository = repository;
+        this.paymentRepository = paymentRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = properties.ttl();
+
+        this.outcomes = Caffeine.newBuilder()
+                .maximumSize(properties.cacheSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, outcomes, "idempotency");
+
+        this.cachedReplays = Counter.builder("idempotency.replays")
+                .tag("source", "cache")
+                .register(meterRegistry);
+        this.storedReplays = Counter.builder("idempotency.replays")
+                .tag("source", "store")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code action} once per caller and key. Without a key the action simply runs.
+     *
+     * @param idempotencyKey the client's key, may be {@code null}
+     * @param request        what the key is bound to; replays must send an equal request
+     */
+    public PaymentResponse execute(
+            String idempotencyKey,
+            Object request,
+            Supplier<PaymentResponse> action
+    ) {
+
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(
+                    "%s must be between 1 and %d characters".formatted(HEADER, MAX_KEY_LENGTH)
+            );
+        }
+
+        Key key = new Key(AuthenticatedUser.current().id(), idempotencyKey);
+        byte[] fingerprint = fingerprint(request);
+
+        CompletableFuture<Outcome> pending = new CompletableFuture<>();
+        CompletableFuture<Outcome> existing = outcomes.asMap().putIfAbsent(key, pending);
+
+        if (existing != null) {
+            cachedReplays.increment();
+            return replay(await(existing), fingerprint);
+        }
+
+        try {
+            Outcome outcome = resolve(key, fingerprint, action);
+            pending.complete(outcome);
+            return replay(outcome, fingerprint);
+        } catch (RuntimeException e) {
+            // Failures are not remembered; the next retry runs the action again
+            outcomes.asMap().remove(key, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.idempotency.purgeInterval:PT1H}",
+            initialDelayString = "${app.idempotency.purgeInterval:PT1H}"
+    )
+    public void purgeExpired() {
+
+        Integer purged = transactionTemplate.execute(status ->
+                repository.deleteExpired(LocalDateTime.now())
+        );
+
+        if (purged != null && purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private Outcome resolve(Key key, byte[] fingerprint, Supplier<PaymentResponse> action) {
+        try {
+            return transactionTemplate.execute(status ->
+                    findStored(key).orElseGet(() -> {
+
+                        PaymentResponse response = action.get();
+
+                        repository.saveAndFlush(IdempotencyRecord.builder()
+                                .userId(key.userId())
+                                .idempotencyKey(key.value())
+                                .fingerprint(fingerprint)
+                                .paymentId(response.id())
+                                .expiresAt(LocalDateTime.now().plus(ttl))
+                                .build());
+
+                        return new Outcome(fingerprint, response);
+                    })
+            );
+        } catch (DataIntegrityViolationException e) {
+            // Another instance stored the key first and its payment won; replay that one
+            return transactionTemplate.execute(status -> findStored(key))
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    private Optional<Outcome> findStored(Key key) {
+
+        Optional<IdempotencyRecord> stored =
+                repository.findByUserIdAndIdempotencyKey(key.userId(), key.value());
+
+        if (stored.isPresent() && stored.get().isExpired()) {
+            // Free the key before it is reused, rather than waiting for the purge
+            repository.delete(stored.get());
+            repository.flush();
+            return Optional.empty();
+        }
+
+        return stored.flatMap(record ->
+                paymentRepository.findResponseById(record.getPaymentId())
+                        .map(response -> {
+                            storedReplays.increment();
+                            return new Outcome(record.getFingerprint(), response);
+                        })
+        );
+    }
+
+    private PaymentResponse replay(Outcome outcome, byte[] fingerprint) {
+
+        if (!MessageDigest.isEqual(outcome.fingerprint(), fingerprint)) {
+            throw new IdempotencyKeyConflictException(
+                    "%s was already used with a different request".formatted(HEADER)
+            );
+        }
+
+        return outcome.response();
+    }
+
+    private static Outcome await(CompletableFuture<Outcome> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private byte[] fingerprint(Object request) {
+        try {
+            return TokenDigest.sha256(objectMapper.writeValueAsString(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request cannot be fingerprinted", e);
+        }
+    }
+
+    private record Key(UUID userId, String value) {}
+
+    private record Outcome(byte[] fingerprint, PaymentResponse response) {}
+}
@@ -0,0 +1,451 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.config.IsoIngestionProperties;
+import com.ashraf.payment.config.ReadYourWrites;
+import com.ashraf.payment.dto.BatchItemResult;
+import com.ashraf.payment.dto.BatchItemStatus;
+import com.ashraf.payment.dto.IsoFileReport;
+import com.ashraf.payment.dto.IsoIngestionSummary;
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.exceptions.ResourceNotFoundException;
+import com.ashraf.payment.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Ingests pacs.008 files dropped into {@code app.iso.ingestion.directory}.
+ * <p>
+ * A watcher thread hands new {@code *.xml} files to a bounded worker pool; a periodic rescan
+ * picks up anything the watcher missed or the full pool turned away. Each file is streamed
+ * through {@link IsoIngestionService}, so memory stays at one chunk however large the file is,
+ * then moved to the done or failed folder next to a JSON {@link IsoFileReport} and, once done,
+ * its pacs.002 status report. A failed file keeps the chunks it already committed; dropping it
+ * again only adds the missing payments, because ISO references are derived from the message.
+ * A file that cannot be moved out is renamed to {@code *.unarchived} so rescans leave it alone.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "app.iso.ingestion", name = "enabled", havingValue = "true")
+public class IsoDirectoryIngestionService implements SmartLifecycle {
+
+    static final String REPORT_SUFFIX = ".report.json";
+    static final String STATUS_REPORT_SUFFIX = ".pacs002.xml";
+    static final String UNARCHIVED_SUFFIX = ".unarchived";
+
+    private static final int MAX_REPORTED_FAILURES = 100;
+
+    private final IsoIngestionService ingestionService;
+    private final Pacs002ReportService statusReportService;
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final IsoIngestionProperties properties;
+    private final ThreadPoolExecutor executor;
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+    // Files that could neither be archived nor renamed, skipped until they change
+    private final Map<Path, FileTime> unarchived = new ConcurrentHashMap<>();
+
+    private final Timer succeededTimer;
+    private final Timer failedTimer;
+    private final Timer lagTimer;
+    private final DistributionSummary fileTransactions;
+    private final DistributionSummary fileThroughput;
+    private final Map<BatchItemStatus, Counter> transactionCounters = new EnumMap<>(BatchItemStatus.class);
+    private final Counter deferred;
+
+    private volatile boolean running;
+    private WatchService watchService;
+
+    public IsoDirectoryIngestionService(
+            IsoIngestionService ingestionService,
+            Pacs002ReportService statusReportService,
+            UserRepository userRepository,
+            ObjectMapper objectMapper,
+            IsoIngestionProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+
+        if (properties.owner() == null || properties.owner().isBlank()) {
+            throw new IllegalStateException("app.iso.ingestion.owner must be set when ingestion is enabled");
+        }
+
+        this.ingestionService = ingestionService;
+        this.statusReportService = statusReportService;
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.executor = new ThreadPoolExecutor(
+                properties.workers(),
+                properties.workers(),
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.queueCapacity()),
+                new CustomizableThreadFactory("iso-ingestion-"),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        new ExecutorServiceMetrics(executor, "iso-ingestion", List.of())
+                .bindTo(meterRegistry);
+
+        this.succeededTimer = Timer.builder("iso.ingestion.file.duration")
+                .tag("outcome", "done")
+                .register(meterRegistry);
+        this.failedTimer = Timer.builder("iso.ingestion.file.duration")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("iso.ingestion.file.lag")
+                .description("Time from the file's last modification to the start of its ingestion")
+                .register(meterRegistry);
+        this.fileTransactions = DistributionSummary.builder("iso.ingestion.file.transactions")
+                .register(meterRegistry);
+        this.fileThroughput = DistributionSummary.builder("iso.ingestion.file.throughput")
+                .baseUnit("transactions/s")
+                .register(meterRegistry);
+        this.deferred = Counter.builder("iso.ingestion.file.deferred")
+                .description("Files left for the next rescan because the worker pool was full")
+                .register(meterRegistry);
+
+        for (BatchItemStatus status : BatchItemStatus.values()) {
+            transactionCounters.put(status, Counter.builder("iso.ingestion.transactions")
+                    .tag("status", status.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    public void start() {
+
+        try {
+            Files.createDirectories(properties.doneDirectory());
+            Files.createDirectories(properties.failedDirectory());
+
+            watchService = properties.directory().getFileSystem().newWatchService();
+            properties.directory().register(watchService, ENTRY_CREATE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot watch " + properties.directory(), e);
+        }
+
+        running = true;
+
+        Thread.ofPlatform()
+                .name("iso-ingestion-watcher")
+                .daemon()
+                .start(this::watch);
+
+        log.info("Watching {} for pacs.008 files owned by {}", properties.directory(), properties.owner());
+
+        rescan();
+    }
+
+    @Override
+    public void stop() {
+
+        running = false;
+
+        // Null when start() failed before the watcher was created
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Failed to close the ingestion watch service", e);
+            }
+        }
+
+        // Queued files stay in the directory and are picked up after the next start
+        executor.getQueue().clear();
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("ISO ingestion workers did not finish within 30s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.iso.ingestion.rescanInterval:PT1M}",
+            initialDelayString = "${app.iso.ingestion.rescanInterval:PT1M}"
+    )
+    public void rescan() {
+
+        if (!running) {
+            return;
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(properties.directory(), "*.xml")) {
+            files.forEach(this::submit);
+        } catch (IOException e) {
+            log.warn("Failed to scan {}", properties.directory(), e);
+        }
+    }
+
+    private void watch() {
+
+        while (running) {
+
+            WatchKey key;
+
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    rescan();
+                } else {
+                    submit(properties.directory().resolve((Path) event.context()));
+                }
+            }
+
+            if (!key.reset()) {
+                log.error("{} is no longer accessible, ISO file ingestion stopped", properties.directory());
+                return;
+            }
+        }
+    }
+
+    private void submit(Path file) {
+
+        if (!file.getFileName().toString().endsWith(".xml") || !Files.isRegularFile(file)) {
+            return;
+        }
+
+        if (isUnarchived(file)) {
+            return;
+        }
+
+        // The watcher and the rescan can both see the same file
+        if (!inFlight.add(file)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    ingest(file);
+                } finally {
+                    inFlight.remove(file);
+                    // Workers are pooled, so the next file must not inherit this one's pin
+                    ReadYourWrites.clear();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(file);
+            deferred.increment();
+            log.debug("Ingestion pool is full, {} is left for the next rescan", file);
+        }
+    }
+
+    IsoFileReport ingest(Path file) {
+
+        Instant startedAt = Instant.now();
+        long lagMillis = lagMillis(file, startedAt);
+        long started = System.nanoTime();
+
+        Totals totals = new Totals();
+        UUID ownerId = null;
+        String messageId = null;
+        String error = null;
+
+        log.info("Ingesting ISO file {}", file.getFileName());
+
+        try (InputStream xml = open(file)) {
+
+            User owner = userRepository.findByUsername(properties.owner())
+                    .orElseThrow(() -> new ResourceNotFoundException(
+                            "User %s not found".formatted(properties.owner())
+                    ));
+            ownerId = owner.getId();
+
+            IsoIngestionSummary summary = ingestionService.ingest(owner, xml, totals::add);
+            messageId = summary.messageId();
+        } catch (IOException | RuntimeException e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            log.warn("ISO file {} failed after {} transactions", file.getFileName(), totals.transactions, e);
+        }
+
+        Duration duration = Duration.ofNanos(System.nanoTime() - started);
+        double seconds = Math.max(duration.toNanos(), 1) / 1e9;
+        boolean succeeded = error == null;
+
+        IsoFileReport report = new IsoFileReport(
+                file.getFileName().toString(),
+                messageId,
+                succeeded,
+                totals.transactions,
+                totals.count(BatchItemStatus.CREATED),
+                totals.count(BatchItemStatus.DUPLICATE),
+                totals.count(BatchItemStatus.FAILED),
+                startedAt,
+                duration.toMillis(),
+                lagMillis,
+                totals.transactions / seconds,
+                error,
+                totals.rejected
+        );
+
+        (succeeded ? succeededTimer : failedTimer).record(duration);
+        lagTimer.record(lagMillis, TimeUnit.MILLISECONDS);
+        fileTransactions.record(report.transactions());
+        fileThroughput.record(report.transactionsPerSecond());
+
+        archive(file, succeeded ? properties.doneDirectory() : properties.failedDirectory(), report);
+
+        if (succeeded && properties.statusReports() && messageId != null) {
+            writeStatusReport(ownerId, messageId, file);
+        }
+
+        log.info("ISO file {} {}. Transactions: {}, Created: {}, Duplicates: {}, Failed: {}, Duration: {}ms, Lag: {}ms",
+                report.file(), succeeded ? "done" : "failed", report.transactions(), report.created(),
+                report.duplicates(), report.failed(), report.durationMillis(), report.lagMillis());
+
+        return report;
+    }
+
+    private InputStream open(Path file) throws IOException {
+        return new BufferedInputStream(
+                Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ)),
+                (int) properties.readBufferSize().toBytes()
+        );
+    }
+
+    private long lagMillis(Path file, Instant startedAt) {
+        try {
+            Instant modified = Files.getLastModifiedTime(file).toInstant();
+            return Math.max(0, Duration.between(modified, startedAt).toMillis());
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void writeStatusReport(UUID ownerId, String messageId, Path file) {
+
+        Path target = properties.doneDirectory().resolve(file.getFileName() + STATUS_REPORT_SUFFIX);
+
+        try {
+            statusReportService.write(ownerId, messageId, target);
+        } catch (RuntimeException e) {
+            log.error("Failed to write pacs.002 for ISO file {}", file.getFileName(), e);
+        }
+    }
+
+    private void archive(Path file, Path folder, IsoFileReport report) {
+
+        try {
+            Files.move(file, folder.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Failed to archive ISO file {} to {}", file, folder, e);
+            setAside(file);
+        }
+
+        try {
+            objectMapper.writerWithDefaultPrettyPrinter()
+                    .writeValue(folder.resolve(file.getFileName() + REPORT_SUFFIX).toFile(), report);
+        } catch (IOException e) {
+            log.error("Failed to write the report for ISO file {} to {}", file.getFileName(), folder, e);
+        }
+    }
+
+    // Left as it is, the file would be ingested again on every rescan
+    private void setAside(Path file) {
+
+        Path renamed = file.resolveSibling(file.getFileName() + UNARCHIVED_SUFFIX);
+
+        try {
+            Files.move(file, renamed, StandardCopyOption.REPLACE_EXISTING);
+            log.warn("ISO file {} was left in the inbox as {}", file.getFileName(), renamed.getFileName());
+        } catch (IOException e) {
+            try {
+                unarchived.put(file, Files.getLastModifiedTime(file));
+                log.warn("ISO file {} cannot be moved and is skipped until it changes", file.getFileName(), e);
+            } catch (IOException gone) {
+                // Nothing left to skip
+            }
+        }
+    }
+
+    private boolean isUnarchived(Path file) {
+
+        FileTime skipped = unarchived.get(file);
+
+        if (skipped == null) {
+            return false;
+        }
+
+        try {
+            if (skipped.equals(Files.getLastModifiedTime(file))) {
+                return true;
+            }
+        } catch (IOException e) {
+            // Gone or unreadable, so a new file of that name is ingested
+        }
+
+        unarchived.remove(file, skipped);
+        return false;
+    }
+
+    private final class Totals {
+
+        private final Map<BatchItemStatus, Long> counts = new EnumMap<>(BatchItemStatus.class);
+        private final List<BatchItemResult> rejected = new ArrayList<>();
+        private long transactions;
+
+        private void add(List<BatchItemResult> results) {
+
+            for (BatchItemResult result : results) {
+
+                counts.merge(result.status(), 1L, Long::sum);
+                transactionCounters.get(result.status()).increment();
+
+                if (result.status() == BatchItemStatus.FAILED && rejected.size() < MAX_REPORTED_FAILURES) {
+                    rejected.add(result);
+                }
+            }
+
+            this.transactions += results.size();
+        }
+
+        private long count(BatchItemStatus status) {
+            return counts.getOrDefault(status, 0L);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.config.PaymentProperties;
+import com.ashraf.payment.dto.BatchItemResult;
+import com.ashraf.payment.dto.BatchItemStatus;
+import com.ashraf.payment.dto.IsoIngestionSummary;
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.iso.IsoPaymentRequest;
+import com.ashraf.payment.iso.IsoTransaction;
+import com.ashraf.payment.iso.Pacs008Reader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Turns every credit transfer of a pacs.008 message into a payment.
+ * <p>
+ * Transactions are pulled from the stream one at a time and written through
+ * {@link PaymentBatchWriter} a chunk at a time ({@code app.payments.batch.chunkSize}), so at
+ * most one chunk of requests is held regardless of message size. A transaction that fails
+ * validation is reported and skipped; the rest of the message is still ingested.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IsoIngestionService {
+
+    private final PaymentBatchWriter batchWriter;
+    private final PaymentProperties properties;
+
+    /**
+     * Ingests {@code xml} for {@code owner}. Results are handed to {@code onChunk} as each
+     * chunk commits, in message order, with {@code index} counting transactions from 0.
+     */
+    public IsoIngestionSummary ingest(
+            User owner,
+            InputStream xml,
+            Consumer<List<BatchItemResult>> onChunk
+    ) {
+        return ingest(owner, xml, onChunk, Long.MAX_VALUE);
+    }
+
+    /**
+     * Ingests {@code xml} and collects every per-transaction result, for callers that
+     * return them all at once. The message may hold at most
+     * {@code app.payments.batch.maxIsoTransactions}; once that many have been ingested, a
+     * further transaction fails the call, though the chunks before it stay committed.
+     */
+    public List<BatchItemResult> ingest(User owner, InputStream xml) {
+        List<BatchItemResult> results = new ArrayList<>();
+        ingest(owner, xml, results::addAll, properties.batch().maxIsoTransactions());
+        return results;
+    }
+
+    private IsoIngestionSummary ingest(
+            User owner,
+            InputStream xml,
+            Consumer<List<BatchItemResult>> onChunk,
+            long maxTransactions
+    ) {
+
+        Map<BatchItemStatus, Long> totals = new EnumMap<>(BatchItemStatus.class);
+        Chunk chunk = new Chunk(properties.batch().chunkSize());
+        int index = 0;
+
+        try (Pacs008Reader reader = Pacs008Reader.open(xml)) {
+
+            while (true) {
+
+                if (index == maxTransactions) {
+                    requireEnd(reader, maxTransactions);
+                    break;
+                }
+
+                try {
+                    Optional<IsoTransaction> transaction = reader.next();
+
+                    if (transaction.isEmpty()) {
+                        break;
+                    }
+
+                    chunk.add(index, IsoPaymentRequest.of(owner.getId(), transaction.get(), index));
+                } catch (IllegalArgumentException e) {
+                    chunk.rejected.add(BatchItemResult.failed(index, null, e.getMessage()));
+                }
+
+                index++;
+
+                if (chunk.isFull()) {
+                    flush(owner, chunk, totals, onChunk);
+                }
+            }
+
+            flush(owner, chunk, totals, onChunk);
+
+            IsoIngestionSummary summary = new IsoIngestionSummary(
+                    reader.messageId(),
+                    index,
+                    totals.getOrDefault(BatchItemStatus.CREATED, 0L),
+                    totals.getOrDefault(BatchItemStatus.DUPLICATE, 0L),
+                    totals.getOrDefault(BatchItemStatus.FAILED, 0L)
+            );
+
+            log.info("ISO message {} ingested for {}. Transactions: {}, Created: {}, Duplicates: {}, Failed: {}",
+                    summary.messageId(), owner.getUsername(), summary.transactions(),
+                    summary.created(), summary.duplicates(), summary.failed());
+
+            return summary;
+        }
+    }
+
+    private static void requireEnd(Pacs008Reader reader, long maxTransactions) {
+
+        boolean more;
+
+        try {
+            more = reader.next().isPresent();
+        } catch (IllegalArgumentException e) {
+            // An invalid transaction is still one too many
+            more = true;
+        }
+
+        if (more) {
+            throw new IllegalArgumentException(
+                    "A pacs.008 message may contain at most %d transactions here; use the ingestion directory for larger files"
+                            .formatted(maxTransactions)
+            );
+        }
+    }
+
+    private void flush(
+            User owner,
+            Chunk chunk,
+            Map<BatchItemStatus, Long> totals,
+            Consumer<List<BatchItemResult>> onChunk
+    ) {
+
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        List<BatchItemResult> results = new ArrayList<>(chunk.rejected);
+        List<BatchItemResult> written = batchWriter.writeIso(owner, chunk.requests);
+
+        // The writer numbers its results within the chunk; map them back to message positions
+        for (BatchItemResult result : written) {
+            results.add(new BatchItemResult(
+                    chunk.positions.get(result.index()),
+                    result.referenceId(),
+                    result.status(),
+                    result.paymentId(),
+                    result.error()
+            ));
+        }
+
+        results.sort(Comparator.comparingInt(BatchItemResult::index));
+        results.forEach(result -> totals.merge(result.status(), 1L, Long::sum));
+
+        onChunk.accept(results);
+        chunk.clear();
+    }
+
+    private static final class Chunk {
+
+        private final int capacity;
+        private final List<IsoPaymentRequest> requests = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+        private final List<BatchItemResult> rejected = new ArrayList<>();
+
+        private Chunk(int capacity) {
+            this.capacity = capacity;
+        }
+
+        private void add(int index, IsoPaymentRequest request) {
+            positions.add(index);
+            requests.add(request);
+        }
+
+        private boolean isFull() {
+            return requests.size() + rejected.size() >= capacity;
+        }
+
+        private boolean isEmpty() {
+            return requests.isEmpty() && rejected.isEmpty();
+        }
+
+        private void clear() {
+            requests.clear();
+            positions.clear();
+            rejected.clear();
+        }
+    }
+}
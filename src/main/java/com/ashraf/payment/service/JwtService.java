@@ -1,57 +1,111 @@
 package com.ashraf.payment.service;
 
 import com.ashraf.payment.config.JwtProperties;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.security.TokenDigest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.security.Key;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
-@RequiredArgsConstructor
 public class JwtService {
 
+    public static final String ROLE_CLAIM = "role";
+    public static final String SESSION_CLAIM = "sid";
+
     private final JwtProperties properties;
 
-    private Key getKey() {
-        return Keys.hmacShaKeyFor(properties.secret().getBytes());
+    // Key and parser are immutable and thread-safe, so they are built once
+    private final Key key;
+    private final JwtParser parser;
+
+    // Already-verified tokens keyed by SHA-256 digest, evicted when the token expires
+    private final Cache<String, Claims> verifiedTokens;
+
+    public JwtService(JwtProperties properties) {
+        this.properties = properties;
+        this.key = Keys.hmacShaKeyFor(properties.secret().getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(properties.verifiedTokenCacheSize())
+                .expireAfter(new UntilTokenExpiry())
+                .build();
     }
 
-    public String generateAccessToken(UUID userId, String jti) {
+    public String generateAccessToken(UUID userId, String jti, UserRole role) {
 
         Instant now = Instant.now();
 
         return Jwts.builder()
                 .setSubject(userId.toString())
                 .setId(jti)
+                .claim(ROLE_CLAIM, role.name())
                 .setIssuedAt(Date.from(now))
                 .setExpiration(Date.from(now.plusSeconds(properties.accessExpiration())))
-                .signWith(getKey())
+                .signWith(key)
                 .compact();
     }
 
-    public String generateRefreshToken(UUID userId) {
+    /**
+     * @param sessionJti jti of the session the token belongs to; every token rotated from it
+     *                   carries the same value, so a rotated-out token still names its session
+     */
+    public String generateRefreshToken(UUID userId, String sessionJti) {
 
         Instant now = Instant.now();
 
+        // Random id keeps two refresh tokens issued in the same second distinct
         return Jwts.builder()
                 .setSubject(userId.toString())
+                .setId(UUID.randomUUID().toString())
+                .claim(SESSION_CLAIM, sessionJti)
                 .setIssuedAt(Date.from(now))
                 .setExpiration(Date.from(now.plusSeconds(properties.refreshExpiration())))
-                .signWith(getKey())
+                .signWith(key)
                 .compact();
     }
 
+    /**
+     * Verifies signature and expiration once and returns the claims.
+     * Repeated calls with the same token are served from the verified-token cache.
+     *
+     * @throws JwtException if the token is malformed, tampered with or expired
+     */
     public Claims parse(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+
+        String digest = TokenDigest.sha256Hex(token);
+
+        Claims claims = verifiedTokens.getIfPresent(digest);
+
+        if (claims == null) {
+            claims = parser.parseClaimsJws(token).getBody();
+            verifiedTokens.put(digest, claims);
+        }
+
+        return claims;
+    }
+
+    /**
+     * Single-pass alternative to {@code isValid} followed by {@code parse}.
+     */
+    public Optional<Claims> verify(String token) {
+        try {
+            return Optional.of(parse(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
     public UUID extractUserId(String token) {
@@ -63,11 +117,33 @@ public class JwtService {
     }
 
     public boolean isValid(String token) {
-        try {
-            parse(token);
-            return true;
-        } catch (JwtException e) {
-            return false;
+        return verify(token).isPresent();
+    }
+
+    private static final class UntilTokenExpiry implements Expiry<String, Claims> {
+
+        @Override
+        public long expireAfterCreate(String digest, Claims claims, long currentTime) {
+
+            Date expiration = claims.getExpiration();
+
+            if (expiration == null) {
+                return 0;
+            }
+
+            long remaining = Duration.between(Instant.now(), expiration.toInstant()).toNanos();
+
+            return Math.max(remaining, 0);
+        }
+
+        @Override
+        public long expireAfterUpdate(String digest, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(digest, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String digest, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
         }
     }
-}
\ No newline at end of file
+}
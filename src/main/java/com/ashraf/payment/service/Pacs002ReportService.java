@@ -0,0 +1,106 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.entity.UuidV7Generator;
+import com.ashraf.payment.iso.IsoPaymentStatus;
+import com.ashraf.payment.iso.Pacs002Writer;
+import com.ashraf.payment.repository.PaymentRepository;
+import com.ashraf.payment.security.AuthenticatedUser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Builds the pacs.002 status report for an ingested pacs.008 message from the stored payments.
+ * Payments are matched on the MsgId they were created from and streamed as read-only
+ * projections into a {@link Pacs002Writer}, so neither rows nor XML accumulate in memory.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class Pacs002ReportService {
+
+    private static final int FLUSH_EVERY = 500;
+
+    private final PaymentRepository repository;
+
+    @Transactional(readOnly = true)
+    public boolean exists(String messageId) {
+        return repository.existsByIsoMessage(AuthenticatedUser.current().id(), messageId);
+    }
+
+    /**
+     * Writes the caller's report for {@code messageId} and returns the number of transactions
+     * in it. {@code out} is flushed but not closed.
+     */
+    @Transactional(readOnly = true)
+    public long write(String messageId, OutputStream out) {
+        return writeReport(AuthenticatedUser.current().id(), messageId, out);
+    }
+
+    /**
+     * Writes {@code userId}'s report for {@code messageId} to {@code file}, replacing it if present.
+     */
+    @Transactional(readOnly = true)
+    public long write(UUID userId, String messageId, Path file) {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            return writeReport(userId, messageId, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long writeReport(UUID userId, String messageId, OutputStream out) {
+
+        OutputStream buffered = new BufferedOutputStream(out);
+        long transactions;
+
+        try (Stream<IsoPaymentStatus> payments = repository.streamIsoStatuses(userId, messageId);
+             Pacs002Writer writer = Pacs002Writer.open(buffered, reportId(), messageId, Instant.now())) {
+
+            Iterator<IsoPaymentStatus> iterator = payments.iterator();
+
+            while (iterator.hasNext()) {
+
+                writer.write(iterator.next());
+
+                if (writer.transactions() % FLUSH_EVERY == 0) {
+                    flush(buffered);
+                }
+            }
+
+            transactions = writer.transactions();
+        }
+
+        flush(buffered);
+
+        log.info("pacs.002 for message {} written for userId: {}. Transactions: {}",
+                messageId, userId, transactions);
+
+        return transactions;
+    }
+
+    // 32 hex characters, within the 35 allowed for MsgId
+    private static String reportId() {
+        return UuidV7Generator.nextUuid().toString().replace("-", "");
+    }
+
+    private static void flush(OutputStream out) {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
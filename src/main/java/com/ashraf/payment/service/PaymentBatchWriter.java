@@ -0,0 +1,209 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.config.PaymentProperties;
+import com.ashraf.payment.dto.BatchItemResult;
+import com.ashraf.payment.dto.PaymentRequest;
+import com.ashraf.payment.entity.Payment;
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.iso.IsoPaymentRequest;
+import com.ashraf.payment.repository.PaymentRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Inserts many payments for one owner with JDBC batching.
+ * <p>
+ * Items are validated and de-duplicated up front, then written in chunks, each in its own
+ * transaction, with references that already exist filtered out by one query per chunk.
+ * If a chunk still fails (a reference taken concurrently, a column limit), only that chunk
+ * is retried item by item, so one bad row never costs the rest of the batch.
+ */
+@Slf4j
+@Component
+public class PaymentBatchWriter {
+
+    private final PaymentRepository repository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final PaymentProperties.Batch properties;
+
+    public PaymentBatchWriter(
+            PaymentRepository repository,
+            EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            Validator validator,
+            PaymentProperties properties
+    ) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.validator = validator;
+        this.properties = properties.batch();
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Writes {@code requests} for {@code owner}; result {@code i} describes request {@code i}.
+     */
+    public List<BatchItemResult> write(User owner, List<PaymentRequest> requests) {
+        return write(owner, requests, i -> null);
+    }
+
+    /**
+     * As {@link #write}, also storing the pacs.008 identifiers of each payment.
+     */
+    public List<BatchItemResult> writeIso(User owner, List<IsoPaymentRequest> requests) {
+        return write(
+                owner,
+                requests.stream().map(IsoPaymentRequest::payment).toList(),
+                requests::get
+        );
+    }
+
+    private List<BatchItemResult> write(
+            User owner,
+            List<PaymentRequest> requests,
+            IntFunction<IsoPaymentRequest> origins
+    ) {
+
+        if (requests.size() > properties.maxItems()) {
+            throw new IllegalArgumentException(
+                    "A batch may contain at most %d payments".formatted(properties.maxItems())
+            );
+        }
+
+        BatchItemResult[] results = new BatchItemResult[requests.size()];
+        Set<String> references = new HashSet<>();
+        List<Item> pending = new ArrayList<>(requests.size());
+
+        for (int i = 0; i < requests.size(); i++) {
+
+            PaymentRequest request = requests.get(i);
+            Optional<String> violation = validate(request);
+
+            if (violation.isPresent()) {
+                results[i] = BatchItemResult.failed(i, request.referenceId(), violation.get());
+            } else if (!references.add(request.referenceId())) {
+                results[i] = BatchItemResult.duplicate(i, request.referenceId());
+            } else {
+                pending.add(new Item(i, request, origins.apply(i)));
+            }
+        }
+
+        for (int from = 0; from < pending.size(); from += properties.chunkSize()) {
+
+            List<Item> chunk = pending.subList(
+                    from,
+                    Math.min(from + properties.chunkSize(), pending.size())
+            );
+
+            writeChunk(owner, chunk).forEach(result -> results[result.index()] = result);
+        }
+
+        return List.of(results);
+    }
+
+    private List<BatchItemResult> writeChunk(User owner, List<Item> chunk) {
+        try {
+            return transactionTemplate.execute(status -> insert(owner, chunk));
+        } catch (DataAccessException | PersistenceException e) {
+            log.warn("Batch chunk of {} payments failed, retrying one by one: {}",
+                    chunk.size(), NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+
+            return chunk.stream()
+                    .map(item -> writeOne(owner, item))
+                    .toList();
+        }
+    }
+
+    private BatchItemResult writeOne(User owner, Item item) {
+
+        String referenceId = item.request().referenceId();
+
+        try {
+            return transactionTemplate.execute(status -> insert(owner, List.of(item))).getFirst();
+        } catch (DataAccessException | PersistenceException e) {
+            return repository.existsByReferenceId(referenceId)
+                    ? BatchItemResult.duplicate(item.index(), referenceId)
+                    : BatchItemResult.failed(item.index(), referenceId, "Payment could not be stored");
+        }
+    }
+
+    private List<BatchItemResult> insert(User owner, List<Item> chunk) {
+
+        Set<String> existing = repository.findExistingReferenceIds(
+                chunk.stream()
+                        .map(item -> item.request().referenceId())
+                        .toList()
+        );
+
+        List<BatchItemResult> results = new ArrayList<>(chunk.size());
+
+        for (Item item : chunk) {
+
+            PaymentRequest request = item.request();
+
+            if (existing.contains(request.referenceId())) {
+                results.add(BatchItemResult.duplicate(item.index(), request.referenceId()));
+                continue;
+            }
+
+            Payment payment = Payment.create(
+                    request.amount(),
+                    request.currency(),
+                    request.referenceId(),
+                    owner
+            );
+
+            if (item.origin() != null) {
+                payment.assignIsoOrigin(
+                        item.origin().messageId(),
+                        item.origin().endToEndId(),
+                        item.origin().transactionId()
+                );
+            }
+
+            // The id is assigned here, before the INSERT, so Hibernate can batch the inserts
+            entityManager.persist(payment);
+
+            results.add(BatchItemResult.created(item.index(), request.referenceId(), payment.getId()));
+        }
+
+        // Not translated: a failure here is Hibernate's own PersistenceException, not a DataAccessException
+        entityManager.flush();
+        entityManager.clear();
+
+        return results;
+    }
+
+    private Optional<String> validate(PaymentRequest request) {
+
+        Set<ConstraintViolation<PaymentRequest>> violations = validator.validate(request);
+
+        if (violations.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", ")));
+    }
+
+    private record Item(int index, PaymentRequest request, IsoPaymentRequest origin) {}
+}
@@ -0,0 +1,194 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.config.PaymentProperties;
+import com.ashraf.payment.dto.BulkTransitionItem;
+import com.ashraf.payment.dto.BulkTransitionRequest;
+import com.ashraf.payment.dto.BulkTransitionResponse;
+import com.ashraf.payment.dto.TransitionOutcome;
+import com.ashraf.payment.entity.PaymentTransition;
+import com.ashraf.payment.repository.PaymentRepository;
+import com.ashraf.payment.security.AuthenticatedUser;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Applies one {@link PaymentTransition} to many payments, for settlement runs.
+ * <p>
+ * Work is split into chunks of {@code app.payments.bulk.chunkSize}. Each chunk is its own
+ * short transaction: lock the rows that are still in the source status, then move them with a
+ * single UPDATE. Locks are therefore held for one chunk, never for the whole run.
+ */
+@Slf4j
+@Service
+public class PaymentBulkTransitionService {
+
+    private final PaymentRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentProperties.Bulk properties;
+    private final MeterRegistry meterRegistry;
+
+    public PaymentBulkTransitionService(
+            PaymentRepository repository,
+            PlatformTransactionManager transactionManager,
+            PaymentProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.repository = repository;
+        this.properties = properties.bulk();
+        this.meterRegistry = meterRegistry;
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public BulkTransitionResponse apply(BulkTransitionRequest request) {
+
+        boolean byIds = request.ids() != null && !request.ids().isEmpty();
+        boolean byFilter = request.createdBefore() != null;
+
+        if (byIds == byFilter) {
+            throw new IllegalArgumentException("Provide either ids or createdBefore");
+        }
+
+        Run run = new Run(AuthenticatedUser.current().id(), request.transition());
+
+        boolean complete = byIds
+                ? applyToIds(run, request.ids())
+                : applyToCreatedBefore(run, request.createdBefore());
+
+        log.info("Bulk {} finished. Applied: {}, Conflicts: {}, Not found: {}, Chunks: {}, Complete: {}",
+                run.transition, run.count(TransitionOutcome.APPLIED), run.count(TransitionOutcome.CONFLICT),
+                run.count(TransitionOutcome.NOT_FOUND), run.chunks, complete);
+
+        return BulkTransitionResponse.of(run.transition, complete, run.items);
+    }
+
+    private boolean applyToIds(Run run, List<UUID> requested) {
+
+        List<UUID> ids = requested.stream().distinct().toList();
+
+        if (ids.size() > properties.maxIds()) {
+            throw new IllegalArgumentException(
+                    "A bulk transition may contain at most %d ids".formatted(properties.maxIds())
+            );
+        }
+
+        for (int from = 0; from < ids.size(); from += properties.chunkSize()) {
+
+            List<UUID> chunk = ids.subList(from, Math.min(from + properties.chunkSize(), ids.size()));
+
+            run.record(transactionTemplate.execute(status -> {
+
+                List<UUID> locked = repository.lockIdsInStatus(chunk, run.userId, run.transition.from());
+                update(run, locked);
+
+                Set<UUID> applied = new HashSet<>(locked);
+                Set<UUID> owned = applied.size() == chunk.size()
+                        ? applied
+                        : new HashSet<>(repository.findOwnedIds(chunk, run.userId));
+
+                return chunk.stream()
+                        .map(id -> new BulkTransitionItem(id, outcome(id, applied, owned)))
+                        .toList();
+            }));
+        }
+
+        return true;
+    }
+
+    private boolean applyToCreatedBefore(Run run, LocalDateTime before) {
+
+        while (run.items.size() < properties.maxIds()) {
+
+            int limit = Math.min(properties.chunkSize(), properties.maxIds() - run.items.size());
+
+            List<UUID> applied = transactionTemplate.execute(status -> {
+                List<UUID> locked = repository.lockIdsInStatusCreatedBefore(
+                        run.userId, run.transition.from(), before, Limit.of(limit)
+                );
+                update(run, locked);
+                return locked;
+            });
+
+            run.record(applied.stream()
+                    .map(id -> new BulkTransitionItem(id, TransitionOutcome.APPLIED))
+                    .toList());
+
+            if (applied.size() < limit) {
+                return true;
+            }
+        }
+
+        // Stopped at the per-request limit; the caller repeats the request for the rest
+        return false;
+    }
+
+    private void update(Run run, List<UUID> locked) {
+        if (!locked.isEmpty()) {
+            repository.applyTransitionByIds(
+                    locked, run.transition.from(), run.transition.to(), LocalDateTime.now()
+            );
+        }
+    }
+
+    private static TransitionOutcome outcome(UUID id, Set<UUID> applied, Set<UUID> owned) {
+        if (applied.contains(id)) {
+            return TransitionOutcome.APPLIED;
+        }
+        // Payments of other users are reported as missing rather than revealed
+        return owned.contains(id) ? TransitionOutcome.CONFLICT : TransitionOutcome.NOT_FOUND;
+    }
+
+    private final class Run {
+
+        private final UUID userId;
+        private final PaymentTransition transition;
+        private final List<BulkTransitionItem> items = new ArrayList<>();
+        private final Map<TransitionOutcome, Long> counts = new EnumMap<>(TransitionOutcome.class);
+        private int chunks;
+
+        private Run(UUID userId, PaymentTransition transition) {
+            this.userId = userId;
+            this.transition = transition;
+        }
+
+        private void record(List<BulkTransitionItem> chunk) {
+
+            items.addAll(chunk);
+            chunks++;
+
+            Map<TransitionOutcome, Long> outcomes = chunk.stream().collect(Collectors.groupingBy(
+                    BulkTransitionItem::outcome,
+                    () -> new EnumMap<>(TransitionOutcome.class),
+                    Collectors.counting()
+            ));
+
+            outcomes.forEach((outcome, count) -> {
+                counts.merge(outcome, count, Long::sum);
+                meterRegistry.counter(
+                        "payments.bulk.transitions",
+                        "transition", transition.name(),
+                        "outcome", outcome.name()
+                ).increment(count);
+            });
+
+            if (chunks % properties.progressEveryChunks() == 0) {
+                log.info("Bulk {} in progress. Chunks: {}, Processed: {}, Applied: {}",
+                        transition, chunks, items.size(), count(TransitionOutcome.APPLIED));
+            }
+        }
+
+        private long count(TransitionOutcome outcome) {
+            return counts.getOrDefault(outcome, 0L);
+        }
+    }
+}
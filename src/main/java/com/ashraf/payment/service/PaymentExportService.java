@@ -0,0 +1,142 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.dto.ExportFormat;
+import com.ashraf.payment.dto.PaymentResponse;
+import com.ashraf.payment.entity.Payment;
+import com.ashraf.payment.mapper.PaymentMapper;
+import com.ashraf.payment.repository.PaymentRepository;
+import com.ashraf.payment.security.AuthenticatedUser;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Streams a user's payments straight to the response as NDJSON or CSV.
+ * Rows are detached as they are written and the output is flushed in chunks,
+ * so memory stays flat regardless of how many rows are exported.
+ */
+@Slf4j
+@Service
+public class PaymentExportService {
+
+    private static final int FLUSH_EVERY = 500;
+
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String CSV_HEADER =
+            "id,amount,currency,status,referenceId,createdAt,updatedAt,userId,username\n";
+
+    private final PaymentRepository repository;
+    private final EntityManager entityManager;
+    private final ObjectWriter rowWriter;
+
+    public PaymentExportService(
+            PaymentRepository repository,
+            EntityManager entityManager,
+            ObjectMapper objectMapper
+    ) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.rowWriter = objectMapper.writerFor(PaymentResponse.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @Transactional(readOnly = true)
+    public long export(
+            ExportFormat format,
+            LocalDateTime from,
+            LocalDateTime to,
+            OutputStream out
+    ) throws IOException {
+
+        UUID userId = AuthenticatedUser.current().id();
+
+        LocalDateTime start = from != null ? from : EARLIEST;
+        LocalDateTime end = to != null ? to : LocalDateTime.now().plusMinutes(1);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+        }
+
+        long rows = 0;
+
+        try (Stream<Payment> payments = repository.streamForExport(userId, start, end)) {
+
+            Iterator<Payment> iterator = payments.iterator();
+
+            while (iterator.hasNext()) {
+
+                Payment payment = iterator.next();
+                PaymentResponse row = PaymentMapper.toResponse(payment);
+
+                // Keep the persistence context from growing with the export
+                entityManager.detach(payment);
+
+                switch (format) {
+                    case NDJSON -> {
+                        rowWriter.writeValue(writer, row);
+                        writer.write('\n');
+                    }
+                    case CSV -> writeCsv(writer, row);
+                }
+
+                if (++rows % FLUSH_EVERY == 0) {
+                    writer.flush();
+                }
+            }
+        }
+
+        writer.flush();
+
+        log.info("Exported {} payments as {} for userId: {}", rows, format, userId);
+
+        return rows;
+    }
+
+    private static void writeCsv(Writer writer, PaymentResponse row) throws IOException {
+        writer.write(String.join(",",
+                String.valueOf(row.id()),
+                row.amount().toPlainString(),
+                csv(row.currency()),
+                String.valueOf(row.status()),
+                csv(row.referenceId()),
+                String.valueOf(row.createdAt()),
+                String.valueOf(row.updatedAt()),
+                String.valueOf(row.userId()),
+                csv(row.username())
+        ));
+        writer.write('\n');
+    }
+
+    private static String csv(String value) {
+
+        if (value == null) {
+            return "";
+        }
+
+        // Spreadsheets evaluate cells starting with these as formulas; a leading quote keeps them text
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
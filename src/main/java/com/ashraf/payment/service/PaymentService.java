@@ -1,22 +1,40 @@
 package com.ashraf.payment.service;
 
+import com.ashraf.payment.dto.BatchPaymentResponse;
+import com.ashraf.payment.dto.PaymentPage;
 import com.ashraf.payment.dto.PaymentRequest;
 import com.ashraf.payment.dto.PaymentResponse;
+import com.ashraf.payment.entity.PaymentStatus;
+import com.ashraf.payment.iso.IsoTransaction;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface PaymentService {
 
     PaymentResponse createPayment(PaymentRequest request);
 
+    /**
+     * Creates the payment for a pacs.008 transaction, or returns the caller's payment already
+     * created from the same message and transaction.
+     */
+    PaymentResponse createIsoPayment(IsoTransaction transaction);
+
+    BatchPaymentResponse createPayments(List<PaymentRequest> requests);
+
+    BatchPaymentResponse ingestIso(InputStream xml);
+
     PaymentResponse getPayment(UUID id);
 
-    List<PaymentResponse> getAllPayments();
+    Optional<Long> getPaymentVersion(UUID id);
+
+    PaymentPage getAllPayments(PaymentStatus status, String currency, String cursor, Integer limit);
 
-    PaymentResponse authorizePayment(UUID id);
+    PaymentResponse authorizePayment(UUID id, Long expectedVersion);
 
-    PaymentResponse capturePayment(UUID id);
+    PaymentResponse capturePayment(UUID id, Long expectedVersion);
 
-    PaymentResponse refundPayment(UUID id);
+    PaymentResponse refundPayment(UUID id, Long expectedVersion);
 }
\ No newline at end of file
@@ -1,14 +1,18 @@
 package com.ashraf.payment.service;
 
+import com.ashraf.payment.dto.SessionIdentity;
 import com.ashraf.payment.entity.User;
 import com.ashraf.payment.entity.UserSession;
+import com.ashraf.payment.exceptions.InvalidCredentialsException;
+import com.ashraf.payment.exceptions.RefreshTokenReuseException;
 import com.ashraf.payment.repository.UserSessionRepository;
+import com.ashraf.payment.security.SessionStateCache;
+import com.ashraf.payment.security.TokenDigest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -17,13 +21,14 @@ import java.util.UUID;
 public class SessionService {
 
     private final UserSessionRepository repository;
+    private final SessionStateCache sessionStateCache;
 
-    public UserSession createSession(User user, String refreshToken, long refreshExpirySeconds, String deviceName, String ip, String userAgent) {
+    public UserSession createSession(User user, String jti, String refreshToken, long refreshExpirySeconds, String deviceName, String ip, String userAgent) {
 
         UserSession session = UserSession.builder()
                 .user(user)
-                .jti(UUID.randomUUID().toString())
-                .refreshToken(refreshToken)
+                .jti(jti)
+                .refreshTokenHash(TokenDigest.sha256(refreshToken))
                 .expiresAt(LocalDateTime.now().plusSeconds(refreshExpirySeconds))
                 .active(true)
                 .deviceName(deviceName)
@@ -34,25 +39,55 @@ public class SessionService {
         return repository.save(session);
     }
 
-    public UserSession validateRefreshToken(String refreshToken) {
+    /**
+     * Rotates the refresh token in a single conditional UPDATE.
+     * Every refresh token names the session it was issued for, so a token of that session
+     * that is no longer its current one, however many rotations ago, is treated as reuse:
+     * every session of its user is revoked and the revocation is committed.
+     */
+    @Transactional(noRollbackFor = RefreshTokenReuseException.class)
+    public SessionIdentity rotateRefreshToken(String jti, String refreshToken, String newRefreshToken, LocalDateTime newExpiry) {
 
-        UserSession session = repository.findByRefreshTokenAndActiveTrue(refreshToken)
-                .orElseThrow(() -> new RuntimeException("Invalid refresh token"));
+        byte[] currentHash = TokenDigest.sha256(refreshToken);
+        byte[] newHash = TokenDigest.sha256(newRefreshToken);
 
-        if (!session.isValid()) {
-            throw new RuntimeException("Session expired");
+        int rotated = repository.rotateRefreshToken(jti, currentHash, newHash, newExpiry, LocalDateTime.now());
+
+        if (rotated == 1) {
+
+            SessionIdentity identity = repository.findIdentityByRefreshTokenHash(newHash)
+                    .orElseThrow(() -> new IllegalStateException("Rotated session not found"));
+
+            // Expiry moved, drop the cached state
+            sessionStateCache.evict(identity.jti());
+
+            return identity;
         }
 
-        return session;
+        // 🚨 REUSE DETECTION
+        var reusedBy = repository.findUserIdBySupersededRefreshToken(jti, currentHash);
+
+        if (reusedBy.isPresent()) {
+
+            // Invalidate ALL sessions for security
+            logoutAll(reusedBy.get());
+
+            throw new RefreshTokenReuseException("Refresh token reuse detected");
+        }
+
+        throw new InvalidCredentialsException("Invalid or expired refresh token");
     }
 
     public void logout(String jti) {
         repository.findByJtiAndActiveTrue(jti)
                 .ifPresent(UserSession::invalidate);
+
+        sessionStateCache.evict(jti);
     }
 
     public void logoutAll(UUID userId) {
-        List<UserSession> sessions = repository.findByUserIdAndActiveTrue(userId);
-        sessions.forEach(UserSession::invalidate);
+        repository.invalidateAllByUserId(userId, LocalDateTime.now());
+
+        sessionStateCache.evictUser(userId);
     }
 }
\ No newline at end of file
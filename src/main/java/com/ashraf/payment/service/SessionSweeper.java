@@ -0,0 +1,124 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.config.SessionProperties;
+import com.ashraf.payment.repository.UserSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Keeps user_sessions small: deactivates sessions past their expiry and
+ * deletes sessions that have been inactive for longer than the retention period.
+ * Work is done in bounded chunks, each in its own short transaction.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.session.sweeper", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SessionSweeper {
+
+    private final UserSessionRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final SessionProperties.Sweeper properties;
+
+    private final Counter expiredRows;
+    private final Counter purgedRows;
+    private final Timer sweepTimer;
+
+    public SessionSweeper(
+            UserSessionRepository repository,
+            TransactionTemplate transactionTemplate,
+            SessionProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties.sweeper();
+
+        this.expiredRows = Counter.builder("session.sweeper.rows")
+                .tag("action", "expired")
+                .register(meterRegistry);
+        this.purgedRows = Counter.builder("session.sweeper.rows")
+                .tag("action", "purged")
+                .register(meterRegistry);
+        this.sweepTimer = Timer.builder("session.sweeper.duration")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.session.sweeper.interval:PT5M}",
+            initialDelayString = "${app.session.sweeper.interval:PT5M}"
+    )
+    public void sweep() {
+        sweepTimer.record(() -> {
+
+            int expired = expireStaleSessions();
+            int purged = purgeDeadSessions();
+
+            if (expired > 0 || purged > 0) {
+                log.info("Session sweep finished. Expired: {}, Purged: {}", expired, purged);
+            }
+        });
+    }
+
+    int expireStaleSessions() {
+
+        LocalDateTime now = LocalDateTime.now();
+
+        return inChunks(
+                limit -> repository.findExpiredActiveIds(now, limit),
+                ids -> repository.expireByIds(ids, now),
+                expiredRows
+        );
+    }
+
+    int purgeDeadSessions() {
+
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.retention());
+
+        return inChunks(
+                limit -> repository.findInactiveIdsBefore(cutoff, limit),
+                repository::deleteByIds,
+                purgedRows
+        );
+    }
+
+    private int inChunks(
+            Function<Limit, List<UUID>> nextChunk,
+            ToIntFunction<List<UUID>> action,
+            Counter counter
+    ) {
+
+        Limit limit = Limit.of(properties.batchSize());
+        int total = 0;
+
+        while (true) {
+
+            ChunkResult chunk = transactionTemplate.execute(status -> {
+                List<UUID> ids = nextChunk.apply(limit);
+                int processed = ids.isEmpty() ? 0 : action.applyAsInt(ids);
+                return new ChunkResult(ids.size(), processed);
+            });
+
+            counter.increment(chunk.processed());
+            total += chunk.processed();
+
+            if (chunk.found() < properties.batchSize()) {
+                return total;
+            }
+        }
+    }
+
+    private record ChunkResult(int found, int processed) {}
+}
@@ -1,21 +1,39 @@
 package com.ashraf.payment.service.impl;
 
+import com.ashraf.payment.config.PaymentProperties;
+import com.ashraf.payment.dto.BatchItemResult;
+import com.ashraf.payment.dto.BatchPaymentResponse;
+import com.ashraf.payment.dto.PaymentCursor;
+import com.ashraf.payment.dto.PaymentPage;
 import com.ashraf.payment.dto.PaymentRequest;
 import com.ashraf.payment.dto.PaymentResponse;
 import com.ashraf.payment.entity.Payment;
+import com.ashraf.payment.entity.PaymentStatus;
+import com.ashraf.payment.entity.PaymentTransition;
 import com.ashraf.payment.entity.User;
+import com.ashraf.payment.exceptions.IsoTransactionConflictException;
+import com.ashraf.payment.exceptions.PaymentStateConflictException;
+import com.ashraf.payment.exceptions.PreconditionFailedException;
 import com.ashraf.payment.exceptions.ResourceNotFoundException;
+import com.ashraf.payment.iso.IsoPaymentRequest;
+import com.ashraf.payment.iso.IsoTransaction;
 import com.ashraf.payment.mapper.PaymentMapper;
 import com.ashraf.payment.repository.PaymentRepository;
 import com.ashraf.payment.repository.UserRepository;
+import com.ashraf.payment.security.AuthenticatedUser;
+import com.ashraf.payment.service.IsoIngestionService;
+import com.ashraf.payment.service.PaymentBatchWriter;
 import com.ashraf.payment.service.PaymentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -26,13 +44,22 @@ public class PaymentServiceImpl implements PaymentService {
 
     private final PaymentRepository repository;
     private final UserRepository userRepository;
+    private final PaymentBatchWriter batchWriter;
+    private final IsoIngestionService isoIngestionService;
+    private final PaymentProperties properties;
 
     private UUID getLoggedInUserId() {
-        return UUID.fromString(
-                SecurityContextHolder.getContext()
-                        .getAuthentication()
-                        .getName()
-        );
+        return AuthenticatedUser.current().id();
+    }
+
+    private User loggedInUser() {
+
+        UUID userId = getLoggedInUserId();
+
+        return userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "User %s not found".formatted(userId)
+                ));
     }
 
     @Override
@@ -63,100 +90,187 @@ public class PaymentServiceImpl implements PaymentService {
         return PaymentMapper.toResponse(saved);
     }
 
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // the writer commits on its own
+    public PaymentResponse createIsoPayment(IsoTransaction transaction) {
+
+        User owner = loggedInUser();
+        IsoPaymentRequest request = IsoPaymentRequest.of(owner.getId(), transaction, 0);
+        String referenceId = request.payment().referenceId();
+
+        BatchItemResult result = batchWriter.writeIso(owner, List.of(request)).getFirst();
+
+        return switch (result.status()) {
+            case CREATED -> repository.findResponseById(result.paymentId())
+                    .orElseThrow(() -> new ResourceNotFoundException(
+                            "Payment %s not found".formatted(result.paymentId())
+                    ));
+            case DUPLICATE -> {
+                PaymentResponse existing = repository.findResponseByReferenceId(referenceId)
+                        .orElseThrow(() -> new ResourceNotFoundException(
+                                "Payment with referenceId %s not found".formatted(referenceId)
+                        ));
+
+                requireOwner(existing.userId(), existing.id());
+
+                // Same MsgId and transaction, but not the same transfer
+                if (existing.amount().compareTo(transaction.amount()) != 0
+                        || !existing.currency().equals(transaction.currency())) {
+                    throw new IsoTransactionConflictException(
+                            "Transaction of ISO message %s was already received with a different amount or currency"
+                                    .formatted(transaction.messageId())
+                    );
+                }
+
+                log.info("Duplicate ISO transaction of message {}, returning existing payment {}",
+                        transaction.messageId(), existing.id());
+
+                yield existing;
+            }
+            case FAILED -> throw new IllegalArgumentException(result.error());
+        };
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // the writer commits per chunk
+    public BatchPaymentResponse createPayments(List<PaymentRequest> requests) {
+
+        User user = loggedInUser();
+
+        BatchPaymentResponse response = BatchPaymentResponse.of(batchWriter.write(user, requests));
+
+        log.info("User {} created payment batch. Created: {}, Duplicates: {}, Failed: {}",
+                user.getUsername(), response.created(), response.duplicates(), response.failed());
+
+        return response;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // the writer commits per chunk
+    public BatchPaymentResponse ingestIso(InputStream xml) {
+        return BatchPaymentResponse.of(isoIngestionService.ingest(loggedInUser(), xml));
+    }
+
     @Override
     @Transactional(readOnly = true)
     public PaymentResponse getPayment(UUID id) {
-        Payment payment = validateOwnership(id);
+
+        PaymentResponse payment = repository.findResponseById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "Payment %s not found".formatted(id)
+                ));
+
+        requireOwner(payment.userId(), id);
 
         log.info("Payment fetched. PaymentId: {}", id);
 
-        return PaymentMapper.toResponse(payment);
+        return payment;
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<PaymentResponse> getAllPayments() {
+    public PaymentPage getAllPayments(PaymentStatus status, String currency, String cursor, Integer limit) {
 
         UUID userId = getLoggedInUserId();
+        int pageSize = pageSize(limit);
 
-        log.info("Fetching all payments for userId: {}", userId);
+        log.info("Fetching payments page for userId: {}, size: {}", userId, pageSize);
 
-        return repository.findByUserId(userId)
-                .stream()
-                .map(PaymentMapper::toResponse)
-                .toList(); // Java 16+
-    }
+        PaymentCursor after = cursor == null ? null : PaymentCursor.decode(cursor);
 
-    @Override
-    public PaymentResponse authorizePayment(UUID id) {
-        Payment payment = validateOwnership(id);
+        // One extra row tells whether another page exists
+        List<PaymentResponse> rows =
+                repository.findResponsePage(userId, status, currency, after, pageSize + 1);
 
-        if (payment.getStatus().canAuthorize()) {
-            throw new IllegalStateException(
-                    "Cannot authorize payment in state %s"
-                            .formatted(payment.getStatus())
-            );
+        if (rows.size() <= pageSize) {
+            return new PaymentPage(rows, null);
         }
 
-        payment.authorize();
+        List<PaymentResponse> items = rows.subList(0, pageSize);
 
-        log.info("Payment authorized. PaymentId: {}", id);
-
-        return PaymentMapper.toResponse(repository.save(payment));
+        return new PaymentPage(items, PaymentCursor.of(items.getLast()).encode());
     }
 
     @Override
-    public PaymentResponse capturePayment(UUID id) {
-        Payment payment = validateOwnership(id);
-
-        if (payment.getStatus().canCapture()) {
-            throw new IllegalStateException(
-                    "Cannot capture payment in state %s"
-                            .formatted(payment.getStatus())
-            );
-        }
-
-        payment.capture();
+    @Transactional(readOnly = true)
+    public Optional<Long> getPaymentVersion(UUID id) {
+        return repository.findVersion(id, getLoggedInUserId());
+    }
 
-        log.info("Payment captured. PaymentId: {}", id);
+    @Override
+    public PaymentResponse authorizePayment(UUID id, Long expectedVersion) {
+        return transition(id, PaymentTransition.AUTHORIZE, expectedVersion);
+    }
 
-        return PaymentMapper.toResponse(repository.save(payment));
+    @Override
+    public PaymentResponse capturePayment(UUID id, Long expectedVersion) {
+        return transition(id, PaymentTransition.CAPTURE, expectedVersion);
     }
 
     @Override
-    public PaymentResponse refundPayment(UUID id) {
-        Payment payment = validateOwnership(id);
+    public PaymentResponse refundPayment(UUID id, Long expectedVersion) {
+        return transition(id, PaymentTransition.REFUND, expectedVersion);
+    }
 
-        if (payment.getStatus().canRefund()) {
-            throw new IllegalStateException(
-                    "Cannot refund payment in state %s"
-                            .formatted(payment.getStatus())
-            );
-        }
+    private int pageSize(Integer requested) {
 
-        payment.refund();
+        var pagination = properties.pagination();
 
-        log.info("Payment refunded. PaymentId: {}", id);
+        if (requested == null) {
+            return pagination.defaultSize();
+        }
 
-        return PaymentMapper.toResponse(repository.save(payment));
+        return Math.clamp(requested, 1, pagination.maxSize());
     }
 
-    private Payment validateOwnership(UUID id) {
+    // One conditional UPDATE; the row is only read again to return it or explain a refusal
+    private PaymentResponse transition(UUID id, PaymentTransition transition, Long expectedVersion) {
 
         UUID userId = getLoggedInUserId();
 
-        Payment payment = repository.findById(id)
+        int updated = repository.applyTransition(
+                id,
+                userId,
+                expectedVersion,
+                transition.from(),
+                transition.to(),
+                LocalDateTime.now()
+        );
+
+        PaymentResponse payment = repository.findResponseById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(
                         "Payment %s not found".formatted(id)
                 ));
 
-        if (!payment.getUser().getId().equals(userId)) {
-            throw new IllegalStateException(
-                    "User %s is not owner of payment %s"
-                            .formatted(userId, id)
+        if (updated == 0) {
+            requireOwner(payment.userId(), id);
+
+            if (expectedVersion != null && !expectedVersion.equals(payment.version())) {
+                throw new PreconditionFailedException(
+                        "Payment %s has changed since it was read".formatted(id)
+                );
+            }
+
+            throw new PaymentStateConflictException(
+                    "Cannot %s payment in state %s"
+                            .formatted(transition.action(), payment.status())
             );
         }
 
+        log.info("Payment {}. PaymentId: {}", transition.to(), id);
+
         return payment;
     }
+
+    private void requireOwner(UUID ownerId, UUID paymentId) {
+
+        UUID userId = getLoggedInUserId();
+
+        if (!ownerId.equals(userId)) {
+            throw new IllegalStateException(
+                    "User %s is not owner of payment %s"
+                            .formatted(userId, paymentId)
+            );
+        }
+    }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -101,4 +102,135 @@ class PaymentIntegrationTest {
                         .header("Authorization", "Bearer " + token))
                 .andExpect(status().isUnauthorized());
     }
+
+    @Test
+    void malformedCursorIsABadRequest() throws Exception {
+
+        String username = "user_" + System.currentTimeMillis();
+
+        mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                        {
+                          "username": "%s",
+                          "password": "password123"
+                        }
+                        """.formatted(username)))
+                .andExpect(status().isOk());
+
+        String loginResponse = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                        {
+                          "username": "%s",
+                          "password": "password123"
+                        }
+                        """.formatted(username)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String token = objectMapper.readTree(loginResponse).get("data").get("accesstoken").asText();
+
+        mockMvc.perform(get("/api/payments")
+                        .param("cursor", "not-a-cursor")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    void throttledLoginIsATooManyRequestsWithRetryAfter() throws Exception {
+
+        String body = """
+                {
+                  "username": "user_%d",
+                  "password": "wrong-password"
+                }
+                """.formatted(System.nanoTime());
+
+        // The username bucket holds 5 attempts
+        for (int i = 0; i < 5; i++) {
+
+            String ip = "10.0.0." + (i + 1);
+
+            mockMvc.perform(post("/api/auth/login")
+                    .with(request -> {
+                        request.setRemoteAddr(ip);
+                        return request;
+                    })
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body));
+        }
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", matchesPattern("[1-9][0-9]*")))
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    void isoIdempotencyKeyReusedForAnotherTransactionIsRejected() throws Exception {
+
+        String token = registerAndLogin();
+        String key = "key-" + System.nanoTime();
+        String messageId = "MSG-" + System.nanoTime();
+
+        mockMvc.perform(post("/api/payments/iso")
+                        .header("Authorization", "Bearer " + token)
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_XML)
+                        .content(pacs008(messageId, "TX-1")))
+                .andExpect(status().isOk());
+
+        // Same amount and currency, but a different transaction
+        mockMvc.perform(post("/api/payments/iso")
+                        .header("Authorization", "Bearer " + token)
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_XML)
+                        .content(pacs008(messageId, "TX-2")))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    private String registerAndLogin() throws Exception {
+
+        String credentials = """
+                {
+                  "username": "user_%d",
+                  "password": "password123"
+                }
+                """.formatted(System.nanoTime());
+
+        mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(credentials))
+                .andExpect(status().isOk());
+
+        String loginResponse = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(credentials))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        return objectMapper.readTree(loginResponse).get("data").get("accesstoken").asText();
+    }
+
+    private static String pacs008(String messageId, String transactionId) {
+        return """
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                    <FIToFICstmrCdtTrf>
+                        <GrpHdr><MsgId>%s</MsgId></GrpHdr>
+                        <CdtTrfTxInf>
+                            <PmtId><TxId>%s</TxId></PmtId>
+                            <IntrBkSttlmAmt Ccy="USD">100</IntrBkSttlmAmt>
+                        </CdtTrfTxInf>
+                    </FIToFICstmrCdtTrf>
+                </Document>
+                """.formatted(messageId, transactionId);
+    }
 }
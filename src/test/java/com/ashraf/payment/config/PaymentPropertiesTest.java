@@ -0,0 +1,34 @@
+package com.ashraf.payment.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentPropertiesTest {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+            .withUserConfiguration(Config.class);
+
+    @Test
+    void defaultsBind() {
+        runner.run(context -> assertThat(context.getBean(PaymentProperties.class).bulk().progressEveryChunks())
+                .isEqualTo(10));
+    }
+
+    @Test
+    void zeroProgressIntervalFailsAtStartup() {
+        runner.withPropertyValues("app.payments.bulk.progressEveryChunks=0")
+                .run(context -> assertThat(context).hasFailed()
+                        .getFailure().rootCause().hasMessageContaining("progressEveryChunks"));
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(PaymentProperties.class)
+    static class Config {}
+}
@@ -0,0 +1,132 @@
+package com.ashraf.payment.config;
+
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.username=sa"
+})
+@ActiveProfiles("test")
+class ReadReplicaRoutingTest {
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primary;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replica;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    @BeforeEach
+    void copySchemaToReplica() {
+
+        // The replica gets the primary's tables but none of its rows, so a read finds
+        // a user only if it ran on the primary
+        JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+        replicaJdbc.execute("DROP ALL OBJECTS");
+
+        new JdbcTemplate(primary).queryForList("SCRIPT NODATA NOPASSWORDS NOSETTINGS", String.class).stream()
+                .filter(statement -> !statement.startsWith("--") && !statement.startsWith("CREATE USER"))
+                .forEach(replicaJdbc::execute);
+    }
+
+    @AfterEach
+    void clearPin() {
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    void readOnlyTransactionsRunOnTheReplica() {
+
+        String username = saveUser();
+        ReadYourWrites.clear();
+
+        assertThat(inTransaction(true, () -> userRepository.findByUsername(username))).isEmpty();
+        assertThat(inTransaction(false, () -> userRepository.findByUsername(username))).isPresent();
+    }
+
+    @Test
+    void readsAfterACommittedWriteStayOnThePrimaryUntilTheRequestEnds() {
+
+        String username = saveUser();
+
+        assertThat(inTransaction(true, () -> userRepository.findByUsername(username))).isPresent();
+
+        ReadYourWrites.clear();
+
+        assertThat(inTransaction(true, () -> userRepository.findByUsername(username))).isEmpty();
+    }
+
+    @Test
+    void scheduledTasksDoNotLeaveTheirThreadPinned() throws Exception {
+
+        // The scheduler has one thread, so the second run reuses the first one's thread
+        String username = scheduled(this::saveUser);
+
+        Optional<User> read = scheduled(() -> inTransaction(true, () -> userRepository.findByUsername(username)));
+
+        assertThat(read).isEmpty();
+    }
+
+    private String saveUser() {
+
+        String username = "user_" + UUID.randomUUID().toString().substring(0, 8);
+
+        inTransaction(false, () -> userRepository.save(User.builder()
+                .username(username)
+                .password("password123")
+                .role(UserRole.ROLE_USER)
+                .build()));
+
+        return username;
+    }
+
+    private <T> T inTransaction(boolean readOnly, Supplier<T> work) {
+
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+
+        return template.execute(status -> work.get());
+    }
+
+    private <T> T scheduled(Supplier<T> task) throws Exception {
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        taskScheduler.schedule(() -> result.complete(task.get()), Instant.now());
+
+        return result.get(10, TimeUnit.SECONDS);
+    }
+}
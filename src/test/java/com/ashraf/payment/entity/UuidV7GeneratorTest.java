@@ -0,0 +1,98 @@
+package com.ashraf.payment.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UuidV7GeneratorTest {
+
+    // Hex strings of equal length sort like the unsigned 128-bit value, i.e. like the index does
+    private static final Comparator<UUID> UNSIGNED = Comparator.comparing(UUID::toString);
+
+    @Test
+    void setsVersionSevenAndTheRfcVariant() {
+
+        List<UUID> ids = IntStream.range(0, 1_000)
+                .mapToObj(i -> UuidV7Generator.nextUuid())
+                .toList();
+
+        assertThat(ids).allSatisfy(id -> {
+            assertThat(id.version()).isEqualTo(7);
+            assertThat(id.variant()).isEqualTo(2);
+            assertThat(id.toString().charAt(14)).isEqualTo('7');
+            assertThat(id.toString().charAt(19)).isIn('8', '9', 'a', 'b');
+        });
+    }
+
+    @Test
+    void embedsTheCurrentUnixMillis() throws Exception {
+
+        // Let the clock pass any timestamp other tests pushed ahead by exhausting the counter
+        Thread.sleep(50);
+
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7Generator.nextUuid();
+        long after = System.currentTimeMillis();
+
+        assertThat(millis(id)).isBetween(before, after);
+    }
+
+    @Test
+    void idsFromManyThreadsInTheSameMillisecondAreUniqueAndOrdered() throws Exception {
+
+        int threads = 8;
+        int perThread = 5_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<List<UUID>> sequences = new ArrayList<>();
+
+        try {
+            List<Future<List<UUID>>> results = IntStream.range(0, threads)
+                    .mapToObj(i -> executor.submit(() -> {
+                        start.await();
+                        return IntStream.range(0, perThread)
+                                .mapToObj(n -> UuidV7Generator.nextUuid())
+                                .toList();
+                    }))
+                    .toList();
+
+            start.countDown();
+
+            for (Future<List<UUID>> result : results) {
+                sequences.add(result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<UUID> all = sequences.stream().flatMap(List::stream).toList();
+
+        // Timestamp and counter alone must already be unique, without help from the random bits
+        assertThat(all).extracting(UUID::getMostSignificantBits).doesNotHaveDuplicates();
+        assertThat(sequences).allSatisfy(sequence -> assertThat(sequence).isSortedAccordingTo(UNSIGNED));
+
+        Map<Long, Long> perMillisecond = all.stream()
+                .collect(Collectors.groupingBy(UuidV7GeneratorTest::millis, Collectors.counting()));
+
+        assertThat(perMillisecond.values()).as("ids sharing a millisecond").anyMatch(count -> count > 1);
+    }
+
+    private static long millis(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+}
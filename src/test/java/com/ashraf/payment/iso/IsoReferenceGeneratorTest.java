@@ -0,0 +1,91 @@
+package com.ashraf.payment.iso;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IsoReferenceGeneratorTest {
+
+    private static final UUID OWNER = UUID.randomUUID();
+
+    @Test
+    void prefersTransactionIdThenEndToEndIdThenPosition() {
+
+        // The TxId decides, whatever the EndToEndId or position
+        assertThat(reference(transaction("MSG1", "E2E-1", "TX-1"), 3))
+                .isEqualTo(reference(transaction("MSG1", "E2E-2", "TX-1"), 5));
+
+        // Without a TxId the EndToEndId decides
+        assertThat(reference(transaction("MSG1", "E2E-1", null), 3))
+                .isEqualTo(reference(transaction("MSG1", "E2E-1", " "), 5))
+                .isNotEqualTo(reference(transaction("MSG1", "E2E-2", null), 3));
+
+        // Without either, the position decides
+        assertThat(reference(transaction("MSG1", "NOTPROVIDED", " "), 3))
+                .isEqualTo(reference(transaction("MSG1", null, null), 3))
+                .isNotEqualTo(reference(transaction("MSG1", null, null), 4));
+    }
+
+    @Test
+    void isStableForTheSameTransaction() {
+
+        IsoTransaction transaction = transaction("MSG1", "E2E-1", "TX-1");
+
+        assertThat(reference(transaction, 0)).isEqualTo(reference(transaction, 0));
+    }
+
+    @Test
+    void doesNotCollideWhenPartsShiftAcrossTheSeparator() {
+
+        assertThat(reference(transaction("A", null, "B-C"), 0))
+                .isNotEqualTo(reference(transaction("A-B", null, "C"), 0));
+        assertThat(reference(transaction("MSG1", null, "1"), 0))
+                .as("a TxId equal to an EndToEndId or a position")
+                .isNotEqualTo(reference(transaction("MSG1", "1", null), 0))
+                .isNotEqualTo(reference(transaction("MSG1", null, null), 1));
+    }
+
+    @Test
+    void isScopedToTheOwner() {
+
+        IsoTransaction transaction = transaction("MSG1", "E2E-1", "TX-1");
+
+        assertThat(IsoReferenceGenerator.reference(UUID.randomUUID(), transaction, 0))
+                .isNotEqualTo(IsoReferenceGenerator.reference(UUID.randomUUID(), transaction, 0));
+    }
+
+    @Test
+    void hasAFixedLengthWhateverTheIds() {
+
+        assertThat(reference(transaction("M".repeat(35), "E".repeat(35), "T".repeat(35)), 0))
+                .startsWith("ISO-")
+                .hasSize("ISO-".length() + 64);
+        assertThat(reference(transaction("M", null, "T"), 0))
+                .hasSize("ISO-".length() + 64);
+        assertThat(reference(transaction(null, null, "T".repeat(35)), 0))
+                .hasSize("ISO-".length() + 36);
+    }
+
+    @Test
+    void fallsBackToUniqueTimeOrderedReferencesWithoutMessageId() {
+
+        IsoTransaction transaction = transaction(null, "E2E-1", "TX-1");
+
+        String first = reference(transaction, 0);
+        String second = reference(transaction, 0);
+
+        assertThat(first).startsWith("ISO-").isNotEqualTo(second);
+        assertThat(first).isLessThan(second);
+    }
+
+    private String reference(IsoTransaction transaction, int position) {
+        return IsoReferenceGenerator.reference(OWNER, transaction, position);
+    }
+
+    private IsoTransaction transaction(String messageId, String endToEndId, String transactionId) {
+        return new IsoTransaction(messageId, endToEndId, transactionId, BigDecimal.TEN, "USD");
+    }
+}
@@ -0,0 +1,80 @@
+package com.ashraf.payment.iso;
+
+import com.ashraf.payment.entity.PaymentStatus;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Pacs002WriterTest {
+
+    @Test
+    void writesOneStatusPerPaymentUnderTheOriginalMessage() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (Pacs002Writer writer = Pacs002Writer.open(out, "STS-1", "MSG-1", Instant.parse("2026-01-02T03:04:05.678Z"))) {
+            writer.write(status("E2E-1", "TX-1", PaymentStatus.CREATED));
+            writer.write(status(null, null, PaymentStatus.CAPTURED));
+            writer.write(status(null, "TX-3", PaymentStatus.FAILED));
+
+            assertThat(writer.transactions()).isEqualTo(3);
+        }
+
+        Document document = parse(out.toByteArray());
+        Element root = document.getDocumentElement();
+
+        assertThat(root.getNamespaceURI()).isEqualTo(Pacs002Writer.NAMESPACE);
+        assertThat(text(root, "MsgId")).isEqualTo("STS-1");
+        assertThat(text(root, "CreDtTm")).isEqualTo("2026-01-02T03:04:05Z");
+        assertThat(text(root, "OrgnlMsgId")).isEqualTo("MSG-1");
+
+        NodeList transactions = root.getElementsByTagNameNS(Pacs002Writer.NAMESPACE, "TxInfAndSts");
+
+        assertThat(transactions.getLength()).isEqualTo(3);
+        assertThat(text((Element) transactions.item(0), "OrgnlEndToEndId")).isEqualTo("E2E-1");
+        assertThat(text((Element) transactions.item(0), "OrgnlTxId")).isEqualTo("TX-1");
+        assertThat(text((Element) transactions.item(0), "TxSts")).isEqualTo("ACTC");
+        assertThat(((Element) transactions.item(1)).getElementsByTagNameNS(Pacs002Writer.NAMESPACE, "OrgnlTxId").getLength()).isZero();
+        assertThat(((Element) transactions.item(2)).getElementsByTagNameNS(Pacs002Writer.NAMESPACE, "OrgnlEndToEndId").getLength()).isZero();
+        assertThat(text((Element) transactions.item(1), "TxSts")).isEqualTo("ACSC");
+        assertThat(text((Element) transactions.item(2), "TxSts")).isEqualTo("RJCT");
+
+        Element amount = (Element) ((Element) transactions.item(2))
+                .getElementsByTagNameNS(Pacs002Writer.NAMESPACE, "IntrBkSttlmAmt").item(0);
+
+        assertThat(amount.getAttribute("Ccy")).isEqualTo("USD");
+        assertThat(amount.getTextContent()).isEqualTo("12.50");
+    }
+
+    @Test
+    void mapsEveryPaymentStatus() {
+        assertThat(Pacs002Writer.statusCode(PaymentStatus.CREATED)).isEqualTo("ACTC");
+        assertThat(Pacs002Writer.statusCode(PaymentStatus.AUTHORIZED)).isEqualTo("ACSP");
+        assertThat(Pacs002Writer.statusCode(PaymentStatus.CAPTURED)).isEqualTo("ACSC");
+        assertThat(Pacs002Writer.statusCode(PaymentStatus.REFUNDED)).isEqualTo("ACSC");
+        assertThat(Pacs002Writer.statusCode(PaymentStatus.FAILED)).isEqualTo("RJCT");
+    }
+
+    private IsoPaymentStatus status(String endToEndId, String transactionId, PaymentStatus status) {
+        return new IsoPaymentStatus(endToEndId, transactionId, new BigDecimal("12.50"), "USD", status);
+    }
+
+    private Document parse(byte[] xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+    }
+
+    private String text(Element parent, String name) {
+        return parent.getElementsByTagNameNS(Pacs002Writer.NAMESPACE, name).item(0).getTextContent();
+    }
+}
@@ -0,0 +1,111 @@
+package com.ashraf.payment.iso;
+
+import com.ashraf.payment.exceptions.InvalidIsoStructureException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class Pacs008ReaderTest {
+
+    @Test
+    void readsMessageIdPaymentIdsAmountAndCurrencyAndSkipsTheRest() {
+
+        IsoTransaction transaction = read("""
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                    <FIToFICstmrCdtTrf>
+                        <GrpHdr>
+                            <MsgId>MSG124</MsgId>
+                            <NbOfTxs>1</NbOfTxs>
+                        </GrpHdr>
+                        <CdtTrfTxInf>
+                            <PmtId><InstrId>I-1</InstrId><EndToEndId>E2E-1</EndToEndId><TxId>TX-1</TxId></PmtId>
+                            <IntrBkSttlmAmt Ccy="INR">20000</IntrBkSttlmAmt>
+                            <Cdtr><Nm>Someone</Nm></Cdtr>
+                        </CdtTrfTxInf>
+                    </FIToFICstmrCdtTrf>
+                </Document>
+                """);
+
+        assertThat(transaction.messageId()).isEqualTo("MSG124");
+        assertThat(transaction.endToEndId()).isEqualTo("E2E-1");
+        assertThat(transaction.transactionId()).isEqualTo("TX-1");
+        assertThat(transaction.amount()).isEqualByComparingTo(new BigDecimal("20000"));
+        assertThat(transaction.currency()).isEqualTo("INR");
+    }
+
+    @Test
+    void keepsTheJaxbValidationErrors() {
+
+        assertThatThrownBy(() -> read("""
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                    <FIToFICstmrCdtTrf><GrpHdr><MsgId>M</MsgId></GrpHdr></FIToFICstmrCdtTrf>
+                </Document>
+                """))
+                .isInstanceOf(InvalidIsoStructureException.class)
+                .hasMessage("Invalid ISO 20022 structure");
+
+        assertThatThrownBy(() -> read("""
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                    <FIToFICstmrCdtTrf><CdtTrfTxInf><IntrBkSttlmAmt>10</IntrBkSttlmAmt></CdtTrfTxInf></FIToFICstmrCdtTrf>
+                </Document>
+                """))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Missing currency");
+    }
+
+    @Test
+    void streamsEveryTransactionAndCarriesOnAfterAnInvalidOne() {
+
+        String xml = """
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                    <FIToFICstmrCdtTrf>
+                        <GrpHdr><MsgId>BULK-1</MsgId><NbOfTxs>3</NbOfTxs></GrpHdr>
+                        <CdtTrfTxInf><IntrBkSttlmAmt Ccy="INR">10</IntrBkSttlmAmt></CdtTrfTxInf>
+                        <CdtTrfTxInf><IntrBkSttlmAmt>20</IntrBkSttlmAmt><RmtInf><Ustrd>x</Ustrd></RmtInf></CdtTrfTxInf>
+                        <CdtTrfTxInf><IntrBkSttlmAmt Ccy="USD">30</IntrBkSttlmAmt></CdtTrfTxInf>
+                    </FIToFICstmrCdtTrf>
+                </Document>
+                """;
+
+        try (Pacs008Reader reader = Pacs008Reader.open(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))) {
+
+            assertThat(reader.next()).get()
+                    .extracting(IsoTransaction::messageId, IsoTransaction::currency)
+                    .containsExactly("BULK-1", "INR");
+
+            assertThatThrownBy(reader::next).hasMessage("Missing currency");
+
+            assertThat(reader.next()).get()
+                    .extracting(IsoTransaction::currency)
+                    .isEqualTo("USD");
+
+            assertThat(reader.next()).isEmpty();
+        }
+    }
+
+    @Test
+    void rejectsExternalEntities() {
+
+        assertThatThrownBy(() -> read("""
+                <?xml version="1.0"?>
+                <!DOCTYPE Document [ <!ENTITY xxe SYSTEM "file:///etc/passwd"> ]>
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                    <FIToFICstmrCdtTrf>
+                        <GrpHdr><MsgId>&xxe;</MsgId></GrpHdr>
+                        <CdtTrfTxInf><IntrBkSttlmAmt Ccy="INR">1</IntrBkSttlmAmt></CdtTrfTxInf>
+                    </FIToFICstmrCdtTrf>
+                </Document>
+                """.strip()))
+                .isInstanceOf(InvalidIsoStructureException.class);
+    }
+
+    private static IsoTransaction read(String xml) {
+        return Pacs008Reader.readFirst(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,128 @@
+package com.ashraf.payment.security;
+
+import com.ashraf.payment.config.LoginThrottleProperties;
+import com.ashraf.payment.controller.AuthController;
+import com.ashraf.payment.dto.AuthRequest;
+import com.ashraf.payment.exceptions.TooManyLoginAttemptsException;
+import com.ashraf.payment.service.AuthService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class LoginRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void usernameBucketThrottlesOneUserAcrossIpsAndIgnoresCase() {
+
+        LoginRateLimiter limiter = limiter(3, Duration.ofMinutes(1), 100, Duration.ofMinutes(1));
+
+        limiter.acquire("alice", "10.0.0.1");
+        limiter.acquire("Alice", "10.0.0.2");
+        limiter.acquire("ALICE", "10.0.0.3");
+
+        assertThatThrownBy(() -> limiter.acquire("alice", "10.0.0.4"))
+                .isInstanceOf(TooManyLoginAttemptsException.class);
+        assertThatNoException().isThrownBy(() -> limiter.acquire("bob", "10.0.0.4"));
+        assertThat(throttled("username")).isEqualTo(1);
+        assertThat(throttled("ip")).isZero();
+    }
+
+    @Test
+    void ipBucketThrottlesOneClientAcrossUsernames() {
+
+        LoginRateLimiter limiter = limiter(100, Duration.ofMinutes(1), 2, Duration.ofMinutes(1));
+
+        limiter.acquire("alice", "10.0.0.1");
+        limiter.acquire("bob", "10.0.0.1");
+
+        assertThatThrownBy(() -> limiter.acquire("carol", "10.0.0.1"))
+                .isInstanceOf(TooManyLoginAttemptsException.class);
+        assertThatNoException().isThrownBy(() -> limiter.acquire("carol", "10.0.0.2"));
+        assertThat(throttled("ip")).isEqualTo(1);
+        assertThat(throttled("username")).isZero();
+    }
+
+    @Test
+    void tokensRefillOverTheRefillPeriod() throws Exception {
+
+        // Idle buckets are evicted after the longest refill period, so keep the IP one long to
+        // make sure the username bucket is refilled rather than dropped and recreated
+        LoginRateLimiter limiter = limiter(1, Duration.ofMillis(200), 100, Duration.ofMinutes(1));
+
+        limiter.acquire("alice", "10.0.0.1");
+
+        assertThatThrownBy(() -> limiter.acquire("alice", "10.0.0.1"))
+                .isInstanceOf(TooManyLoginAttemptsException.class);
+
+        Thread.sleep(300);
+
+        assertThatNoException().isThrownBy(() -> limiter.acquire("alice", "10.0.0.1"));
+    }
+
+    @Test
+    void rejectionCarriesTheTimeUntilTheNextToken() {
+
+        LoginRateLimiter limiter = limiter(2, Duration.ofMinutes(1), 100, Duration.ofMinutes(1));
+
+        limiter.acquire("alice", "10.0.0.1");
+        limiter.acquire("alice", "10.0.0.1");
+
+        // Two tokens a minute, so the next one is at most 30 seconds away
+        assertThatThrownBy(() -> limiter.acquire("alice", "10.0.0.1"))
+                .isInstanceOfSatisfying(TooManyLoginAttemptsException.class, e -> assertThat(e.getRetryAfter())
+                        .isPositive()
+                        .isLessThanOrEqualTo(Duration.ofSeconds(30)));
+    }
+
+    @Test
+    void throttledLoginIsRejectedBeforeReachingTheService() {
+
+        LoginRateLimiter limiter = limiter(1, Duration.ofMinutes(1), 100, Duration.ofMinutes(1));
+        AuthService authService = mock(AuthService.class);
+
+        AuthController controller = new AuthController(authService, limiter);
+
+        limiter.acquire("alice", "127.0.0.1");
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("127.0.0.1");
+
+        // The service is transactional, so not calling it means no connection is borrowed
+        assertThatThrownBy(() -> controller.login(new AuthRequest("alice", "password123"), request))
+                .isInstanceOf(TooManyLoginAttemptsException.class);
+        verifyNoInteractions(authService);
+    }
+
+    private LoginRateLimiter limiter(
+            int usernameCapacity,
+            Duration usernameRefillPeriod,
+            int ipCapacity,
+            Duration ipRefillPeriod
+    ) {
+        return new LoginRateLimiter(
+                new LoginThrottleProperties(
+                        true,
+                        1_000,
+                        usernameCapacity,
+                        usernameRefillPeriod,
+                        ipCapacity,
+                        ipRefillPeriod
+                ),
+                meterRegistry
+        );
+    }
+
+    private double throttled(String key) {
+        return meterRegistry.get("auth.login.throttled").tag("key", key).counter().count();
+    }
+}
@@ -0,0 +1,121 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.dto.AuthRequest;
+import com.ashraf.payment.dto.AuthResponse;
+import com.ashraf.payment.dto.RegisterRequest;
+import com.ashraf.payment.exceptions.InvalidCredentialsException;
+import com.ashraf.payment.exceptions.RefreshTokenReuseException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AuthServiceTest {
+
+    private static final int PARALLEL_REFRESHES = 8;
+
+    @Autowired
+    private AuthService authService;
+
+    @Test
+    void refreshRotatesTokenAndRejectsRotatedToken() {
+
+        AuthResponse login = registerAndLogin();
+
+        AuthResponse refreshed = authService.refresh(login.refreshToken());
+        AuthResponse refreshedAgain = authService.refresh(refreshed.refreshToken());
+
+        assertThat(refreshedAgain.refreshToken()).isNotEqualTo(refreshed.refreshToken());
+
+        assertThatThrownBy(() -> authService.refresh(login.refreshToken()))
+                .isInstanceOf(RefreshTokenReuseException.class);
+
+        // Reuse revoked the session, so its current token is dead as well
+        assertThatThrownBy(() -> authService.refresh(refreshedAgain.refreshToken()))
+                .isInstanceOf(InvalidCredentialsException.class);
+    }
+
+    @Test
+    void reuseOfATokenRotatedOutManyGenerationsAgoRevokesTheSession() {
+
+        AuthResponse login = registerAndLogin();
+
+        String current = login.refreshToken();
+        List<String> rotatedOut = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            rotatedOut.add(current);
+            current = authService.refresh(current).refreshToken();
+        }
+
+        String latest = current;
+
+        assertThatThrownBy(() -> authService.refresh(rotatedOut.get(1)))
+                .isInstanceOf(RefreshTokenReuseException.class);
+        assertThatThrownBy(() -> authService.refresh(latest))
+                .isInstanceOf(InvalidCredentialsException.class);
+    }
+
+    @Test
+    void parallelRefreshesWithSameTokenRotateOnceAndReportReuse() throws Exception {
+
+        AuthResponse login = registerAndLogin();
+
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_REFRESHES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < PARALLEL_REFRESHES; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        authService.refresh(login.refreshToken());
+                        return "ROTATED";
+                    } catch (RefreshTokenReuseException e) {
+                        return "REUSE";
+                    }
+                }));
+            }
+
+            start.countDown();
+
+            List<String> outcomes = new ArrayList<>();
+            for (Future<String> future : futures) {
+                outcomes.add(future.get(30, TimeUnit.SECONDS));
+            }
+
+            assertThat(outcomes).containsOnly("ROTATED", "REUSE");
+            assertThat(outcomes).filteredOn("ROTATED"::equals).hasSize(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private AuthResponse registerAndLogin() {
+
+        String username = "user_" + UUID.randomUUID().toString().substring(0, 8);
+
+        authService.register(new RegisterRequest(username, "password123"));
+
+        return authService.login(
+                new AuthRequest(username, "password123"),
+                new MockHttpServletRequest()
+        );
+    }
+}
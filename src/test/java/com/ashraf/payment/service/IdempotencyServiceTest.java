@@ -0,0 +1,262 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.config.IdempotencyProperties;
+import com.ashraf.payment.dto.PaymentRequest;
+import com.ashraf.payment.dto.PaymentResponse;
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.exceptions.IdempotencyKeyConflictException;
+import com.ashraf.payment.iso.IsoTransaction;
+import com.ashraf.payment.repository.IdempotencyRecordRepository;
+import com.ashraf.payment.repository.PaymentRepository;
+import com.ashraf.payment.repository.UserRepository;
+import com.ashraf.payment.security.AuthenticatedUser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private IdempotencyProperties properties;
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void concurrentRequestsWithOneKeyCreateOnePayment() throws Exception {
+
+        User user = user();
+        PaymentRequest request = request();
+        String key = UUID.randomUUID().toString();
+
+        int attempts = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(attempts);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<PaymentResponse> responses;
+
+        try {
+            List<Future<PaymentResponse>> results = IntStream.range(0, attempts)
+                    .mapToObj(i -> executor.submit(() -> {
+                        signIn(user);
+                        try {
+                            start.await();
+                            return idempotencyService.execute(key, request, create(request));
+                        } finally {
+                            SecurityContextHolder.clearContext();
+                        }
+                    }))
+                    .toList();
+
+            start.countDown();
+
+            responses = results.stream().map(result -> {
+                try {
+                    return result.get(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            }).toList();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(created).hasValue(1);
+        assertThat(responses).extracting(PaymentResponse::id).containsOnly(responses.getFirst().id());
+        assertThat(paymentsOf(user)).isEqualTo(1);
+    }
+
+    @Test
+    void replayReturnsTheOriginalResponse() {
+
+        signIn(user());
+        PaymentRequest request = request();
+        String key = UUID.randomUUID().toString();
+
+        PaymentResponse first = idempotencyService.execute(key, request, create(request));
+        PaymentResponse replay = idempotencyService.execute(key, request, create(request));
+
+        assertThat(created).hasValue(1);
+        assertThat(replay).isEqualTo(first);
+    }
+
+    @Test
+    void reusingAKeyWithADifferentRequestIsAConflict() {
+
+        User user = user();
+        signIn(user);
+        PaymentRequest request = request();
+        PaymentRequest other = new PaymentRequest(request.amount().add(BigDecimal.ONE), "USD", request.referenceId());
+        String key = UUID.randomUUID().toString();
+
+        idempotencyService.execute(key, request, create(request));
+
+        assertThatThrownBy(() -> idempotencyService.execute(key, other, create(other)))
+                .isInstanceOf(IdempotencyKeyConflictException.class)
+                .hasMessage("Idempotency-Key was already used with a different request");
+        assertThat(created).hasValue(1);
+        assertThat(paymentsOf(user)).isEqualTo(1);
+    }
+
+    @Test
+    void replayAfterTheCacheLetGoIsServedFromTheStoredRecord() {
+
+        User user = user();
+        signIn(user);
+        PaymentRequest request = request();
+        String key = UUID.randomUUID().toString();
+
+        PaymentResponse first = idempotencyService.execute(key, request, create(request));
+
+        // A fresh instance has an empty cache, as after eviction or on another node
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IdempotencyService coldCache = new IdempotencyService(
+                recordRepository,
+                paymentRepository,
+                transactionTemplate,
+                objectMapper,
+                properties,
+                meterRegistry
+        );
+
+        PaymentResponse replay = coldCache.execute(key, request, create(request));
+
+        assertThat(created).hasValue(1);
+        assertThat(replay.id()).isEqualTo(first.id());
+        assertThat(meterRegistry.get("idempotency.replays").tag("source", "store").counter().count())
+                .isEqualTo(1);
+        assertThatThrownBy(() -> coldCache.execute(key, request(), create(request())))
+                .isInstanceOf(IdempotencyKeyConflictException.class);
+    }
+
+    @Test
+    void isoRetryAfterTheRecordFailedToSaveRecoversTheCommittedPayment() {
+
+        User user = user();
+        signIn(user);
+
+        // The ISO action commits the payment on its own, before the record is saved
+        IdempotencyRecordRepository failingOnce = mock(IdempotencyRecordRepository.class, delegatesTo(recordRepository));
+        doThrow(new QueryTimeoutException("record save timed out"))
+                .doAnswer(invocation -> recordRepository.saveAndFlush(invocation.getArgument(0)))
+                .when(failingOnce).saveAndFlush(any());
+
+        IdempotencyService service = new IdempotencyService(
+                failingOnce,
+                paymentRepository,
+                transactionTemplate,
+                objectMapper,
+                properties,
+                new SimpleMeterRegistry()
+        );
+
+        IsoTransaction transaction = new IsoTransaction(
+                "MSG-" + UUID.randomUUID().toString().substring(0, 8), null, "TX-1", BigDecimal.TEN, "USD"
+        );
+        String key = UUID.randomUUID().toString();
+
+        assertThatThrownBy(() -> service.execute(key, transaction, () -> paymentService.createIsoPayment(transaction)))
+                .isInstanceOf(QueryTimeoutException.class);
+        assertThat(paymentsOf(user)).isEqualTo(1);
+
+        PaymentResponse retried = service.execute(key, transaction, () -> paymentService.createIsoPayment(transaction));
+
+        assertThat(paymentsOf(user)).isEqualTo(1);
+        assertThat(recordRepository.findByUserIdAndIdempotencyKey(user.getId(), key))
+                .hasValueSatisfying(record -> assertThat(record.getPaymentId()).isEqualTo(retried.id()));
+    }
+
+    private Supplier<PaymentResponse> create(PaymentRequest request) {
+        return () -> {
+            created.incrementAndGet();
+            return paymentService.createPayment(request);
+        };
+    }
+
+    private static PaymentRequest request() {
+        return new PaymentRequest(BigDecimal.valueOf(250), "USD", "REF-" + UUID.randomUUID());
+    }
+
+    private long paymentsOf(User user) {
+        return paymentRepository.findAll().stream()
+                .filter(payment -> payment.getUser().getId().equals(user.getId()))
+                .count();
+    }
+
+    private User user() {
+        return userRepository.save(User.builder()
+                .username("user_" + UUID.randomUUID().toString().substring(0, 8))
+                .password("password123")
+                .role(UserRole.ROLE_USER)
+                .build());
+    }
+
+    private void signIn(User user) {
+
+        AuthenticatedUser principal = new AuthenticatedUser(user.getId(), user.getRole());
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(
+                        principal,
+                        null,
+                        List.of(new SimpleGrantedAuthority(user.getRole().name()))
+                )
+        );
+    }
+}
@@ -0,0 +1,232 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.config.IsoIngestionProperties;
+import com.ashraf.payment.dto.IsoFileReport;
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.iso.IsoReferenceGenerator;
+import com.ashraf.payment.iso.IsoTransaction;
+import com.ashraf.payment.repository.PaymentRepository;
+import com.ashraf.payment.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class IsoDirectoryIngestionServiceTest {
+
+    private static final String OWNER = "iso-partner";
+
+    @TempDir
+    static Path inbox;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private IsoIngestionService ingestionService;
+
+    @Autowired
+    private Pacs002ReportService statusReportService;
+
+    @DynamicPropertySource
+    static void ingestion(DynamicPropertyRegistry registry) {
+        registry.add("app.iso.ingestion.enabled", () -> "true");
+        registry.add("app.iso.ingestion.directory", () -> inbox.toString());
+        registry.add("app.iso.ingestion.owner", () -> OWNER);
+        registry.add("app.iso.ingestion.rescanInterval", () -> "PT1S");
+    }
+
+    @BeforeEach
+    void owner() {
+        if (userRepository.findByUsername(OWNER).isEmpty()) {
+            userRepository.save(User.builder()
+                    .username(OWNER)
+                    .password("password123")
+                    .role(UserRole.ROLE_USER)
+                    .build());
+        }
+    }
+
+    @Test
+    void droppedFileIsIngestedAndArchivedWithAReport() throws Exception {
+
+        String messageId = "DROP-" + UUID.randomUUID().toString().substring(0, 8);
+
+        drop("batch.xml", """
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                    <FIToFICstmrCdtTrf>
+                        <GrpHdr><MsgId>%s</MsgId><NbOfTxs>3</NbOfTxs></GrpHdr>
+                        <CdtTrfTxInf><PmtId><TxId>TX-1</TxId></PmtId><IntrBkSttlmAmt Ccy="INR">10</IntrBkSttlmAmt></CdtTrfTxInf>
+                        <CdtTrfTxInf><PmtId><TxId>TX-2</TxId></PmtId><IntrBkSttlmAmt>20</IntrBkSttlmAmt></CdtTrfTxInf>
+                        <CdtTrfTxInf><PmtId><TxId>TX-3</TxId></PmtId><IntrBkSttlmAmt Ccy="USD">30</IntrBkSttlmAmt></CdtTrfTxInf>
+                    </FIToFICstmrCdtTrf>
+                </Document>
+                """.formatted(messageId));
+
+        IsoFileReport report = awaitReport(inbox.resolve("done"), "batch.xml");
+
+        assertThat(inbox.resolve("batch.xml")).doesNotExist();
+        assertThat(inbox.resolve("done/batch.xml")).exists();
+        assertThat(report.succeeded()).isTrue();
+        assertThat(report.messageId()).isEqualTo(messageId);
+        assertThat(report.transactions()).isEqualTo(3);
+        assertThat(report.created()).isEqualTo(2);
+        assertThat(report.failed()).isEqualTo(1);
+        assertThat(report.rejected()).singleElement()
+                .satisfies(item -> assertThat(item.error()).isEqualTo("Missing currency"));
+        assertThat(paymentRepository.existsByReferenceId(IsoReferenceGenerator.reference(
+                userRepository.findByUsername(OWNER).orElseThrow().getId(),
+                new IsoTransaction(messageId, null, "TX-3", BigDecimal.valueOf(30), "USD"),
+                2
+        ))).isTrue();
+
+        String statusReport = awaitContent(inbox.resolve("done/batch.xml" + IsoDirectoryIngestionService.STATUS_REPORT_SUFFIX));
+
+        assertThat(statusReport)
+                .contains("<OrgnlMsgId>" + messageId + "</OrgnlMsgId>")
+                .contains("<OrgnlTxId>TX-1</OrgnlTxId>", "<OrgnlTxId>TX-3</OrgnlTxId>")
+                .doesNotContain("<OrgnlTxId>TX-2</OrgnlTxId>")
+                .endsWith("</Document>");
+        assertThat(statusReport.split("<TxSts>ACTC</TxSts>", -1)).hasSize(3);
+    }
+
+    @Test
+    void malformedFileIsMovedToFailed() throws Exception {
+
+        drop("broken.xml", """
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                    <FIToFICstmrCdtTrf><GrpHdr><MsgId>BROKEN</MsgId></GrpHdr><CdtTrfTxInf>
+                """);
+
+        IsoFileReport report = awaitReport(inbox.resolve("failed"), "broken.xml");
+
+        assertThat(inbox.resolve("failed/broken.xml")).exists();
+        assertThat(report.succeeded()).isFalse();
+        assertThat(report.error()).isNotBlank();
+    }
+
+    @Test
+    void fileThatCannotBeArchivedIsSetAsideAndNotIngestedAgain() throws Exception {
+
+        String messageId = "STUCK-" + UUID.randomUUID().toString().substring(0, 8);
+
+        // A non-empty directory where the file should go makes the move fail
+        Files.createDirectories(inbox.resolve("done/stuck.xml"));
+        Files.writeString(inbox.resolve("done/stuck.xml/keep"), "");
+
+        drop("stuck.xml", """
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                    <FIToFICstmrCdtTrf>
+                        <GrpHdr><MsgId>%s</MsgId></GrpHdr>
+                        <CdtTrfTxInf><PmtId><TxId>TX-1</TxId></PmtId><IntrBkSttlmAmt Ccy="USD">10</IntrBkSttlmAmt></CdtTrfTxInf>
+                    </FIToFICstmrCdtTrf>
+                </Document>
+                """.formatted(messageId));
+
+        IsoFileReport report = awaitReport(inbox.resolve("done"), "stuck.xml");
+
+        assertThat(report.succeeded()).isTrue();
+        assertThat(report.created()).isEqualTo(1);
+        assertThat(inbox.resolve("stuck.xml")).doesNotExist();
+        assertThat(inbox.resolve("stuck.xml" + IsoDirectoryIngestionService.UNARCHIVED_SUFFIX)).exists();
+
+        Path reportFile = inbox.resolve("done/stuck.xml" + IsoDirectoryIngestionService.REPORT_SUFFIX);
+        var written = Files.getLastModifiedTime(reportFile);
+
+        // Longer than the rescan interval: a rescan must not ingest the file again
+        Thread.sleep(2_500);
+
+        assertThat(Files.getLastModifiedTime(reportFile)).isEqualTo(written);
+    }
+
+    @Test
+    void stopAfterAFailedStartDoesNotThrow() throws Exception {
+
+        // The inbox cannot be created under a regular file, so start() fails before the watcher exists
+        Path blocker = Files.writeString(inbox.resolve("not-a-directory"), "");
+
+        IsoDirectoryIngestionService service = new IsoDirectoryIngestionService(
+                ingestionService,
+                statusReportService,
+                userRepository,
+                objectMapper,
+                new IsoIngestionProperties(
+                        true, blocker.resolve("inbox"), "done", "failed", OWNER,
+                        1, 1, Duration.ofMinutes(1), DataSize.ofKilobytes(64), false
+                ),
+                new SimpleMeterRegistry()
+        );
+
+        assertThatThrownBy(service::start).isInstanceOf(UncheckedIOException.class);
+        assertThatNoException().isThrownBy(service::stop);
+    }
+
+    private void drop(String name, String xml) throws Exception {
+
+        // Write elsewhere and rename, as a sender would, so the watcher never sees a partial file
+        Path part = inbox.resolve(name + ".part");
+        Files.writeString(part, xml);
+        Files.move(part, inbox.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private String awaitContent(Path file) throws Exception {
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+
+        while (!Files.exists(file) || !Files.readString(file).endsWith("</Document>")) {
+            assertThat(System.nanoTime()).as("content of %s", file).isLessThan(deadline);
+            Thread.sleep(50);
+        }
+
+        return Files.readString(file);
+    }
+
+    private IsoFileReport awaitReport(Path folder, String name) throws Exception {
+
+        Path report = folder.resolve(name + IsoDirectoryIngestionService.REPORT_SUFFIX);
+        long deadline = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+
+        while (!Files.exists(report)) {
+            assertThat(System.nanoTime()).as("report for %s", name).isLessThan(deadline);
+            Thread.sleep(50);
+        }
+
+        // The report may still be being written
+        while (true) {
+            try {
+                return objectMapper.readValue(report.toFile(), IsoFileReport.class);
+            } catch (Exception e) {
+                assertThat(System.nanoTime()).as("readable report for %s", name).isLessThan(deadline);
+                Thread.sleep(50);
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.dto.BatchItemResult;
+import com.ashraf.payment.dto.BatchItemStatus;
+import com.ashraf.payment.dto.BatchPaymentResponse;
+import com.ashraf.payment.dto.IsoIngestionSummary;
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.exceptions.InvalidIsoStructureException;
+import com.ashraf.payment.repository.PaymentRepository;
+import com.ashraf.payment.repository.UserRepository;
+import com.ashraf.payment.security.AuthenticatedUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "app.payments.batch.chunkSize=2",
+        "app.payments.batch.maxIsoTransactions=6"
+})
+@ActiveProfiles("test")
+class IsoIngestionServiceTest {
+
+    private static final String VALID = """
+            <CdtTrfTxInf><PmtId><TxId>TX-%d</TxId></PmtId><IntrBkSttlmAmt Ccy="USD">%d</IntrBkSttlmAmt></CdtTrfTxInf>
+            """;
+
+    private static final String NO_CURRENCY = """
+            <CdtTrfTxInf><PmtId><TxId>TX-%d</TxId></PmtId><IntrBkSttlmAmt>%d</IntrBkSttlmAmt></CdtTrfTxInf>
+            """;
+
+    @Autowired
+    private IsoIngestionService ingestionService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void chunksCommitInOrderWithMessagePositions() {
+
+        User user = user();
+        String messageId = "MSG-" + UUID.randomUUID().toString().substring(0, 8);
+
+        List<List<BatchItemResult>> chunks = new ArrayList<>();
+
+        IsoIngestionSummary summary = ingestionService.ingest(
+                user,
+                pacs008(messageId, VALID, VALID, NO_CURRENCY, VALID, VALID),
+                chunks::add
+        );
+
+        // The rejected transaction takes a slot in its chunk, so the writer numbers TX-3 as 0
+        assertThat(chunks).extracting(chunk -> chunk.stream().map(BatchItemResult::index).toList())
+                .containsExactly(List.of(0, 1), List.of(2, 3), List.of(4));
+
+        List<BatchItemResult> results = chunks.stream().flatMap(List::stream).toList();
+
+        assertThat(results).extracting(BatchItemResult::status).containsExactly(
+                BatchItemStatus.CREATED,
+                BatchItemStatus.CREATED,
+                BatchItemStatus.FAILED,
+                BatchItemStatus.CREATED,
+                BatchItemStatus.CREATED
+        );
+        assertThat(results.get(2).error()).isEqualTo("Missing currency");
+        assertThat(results).filteredOn(result -> result.status() == BatchItemStatus.CREATED)
+                .extracting(BatchItemResult::referenceId)
+                .doesNotHaveDuplicates();
+        assertThat(results).filteredOn(result -> result.status() == BatchItemStatus.CREATED)
+                .allSatisfy(result -> assertThat(paymentRepository.findById(result.paymentId()))
+                        .hasValueSatisfying(payment -> assertThat(payment.getReferenceId()).isEqualTo(result.referenceId())));
+
+        assertThat(summary.messageId()).isEqualTo(messageId);
+        assertThat(summary.transactions()).isEqualTo(5);
+        assertThat(summary.created()).isEqualTo(4);
+        assertThat(summary.failed()).isEqualTo(1);
+    }
+
+    @Test
+    void truncatedMessageKeepsTheChunksAlreadyCommitted() {
+
+        User user = user();
+        String messageId = "MSG-" + UUID.randomUUID().toString().substring(0, 8);
+
+        String xml = xml(messageId, VALID, VALID, VALID);
+        String truncated = xml.substring(0, xml.indexOf("<CdtTrfTxInf><PmtId><TxId>TX-2") + 40);
+
+        List<List<BatchItemResult>> chunks = new ArrayList<>();
+
+        assertThatThrownBy(() -> ingestionService.ingest(user, stream(truncated), chunks::add))
+                .isInstanceOf(InvalidIsoStructureException.class);
+
+        assertThat(chunks).singleElement().satisfies(chunk -> assertThat(chunk)
+                .extracting(BatchItemResult::status)
+                .containsExactly(BatchItemStatus.CREATED, BatchItemStatus.CREATED));
+        assertThat(chunks.getFirst()).allSatisfy(result ->
+                assertThat(paymentRepository.existsById(result.paymentId())).isTrue());
+        assertThat(paymentsOf(user)).isEqualTo(2);
+    }
+
+    @Test
+    void bulkEndpointReturnsEveryResultUpToTheLimit() {
+
+        User user = user();
+        signIn(user);
+
+        String[] six = IntStream.range(0, 6).mapToObj(i -> VALID).toArray(String[]::new);
+
+        BatchPaymentResponse response = paymentService.ingestIso(pacs008("MSG-" + UUID.randomUUID().toString().substring(0, 8), six));
+
+        assertThat(response.created()).isEqualTo(6);
+        assertThat(response.items()).extracting(BatchItemResult::index).containsExactly(0, 1, 2, 3, 4, 5);
+    }
+
+    @Test
+    void bulkEndpointRejectsMessagesOverTheLimit() {
+
+        User user = user();
+        signIn(user);
+
+        String[] seven = IntStream.range(0, 7).mapToObj(i -> VALID).toArray(String[]::new);
+
+        assertThatThrownBy(() -> paymentService.ingestIso(pacs008("MSG-" + UUID.randomUUID().toString().substring(0, 8), seven)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("at most 6 transactions");
+
+        // The streaming path used by the ingestion directory is not limited
+        IsoIngestionSummary summary = ingestionService.ingest(
+                user, pacs008("MSG-" + UUID.randomUUID().toString().substring(0, 8), seven), chunk -> {});
+
+        assertThat(summary.created()).isEqualTo(7);
+    }
+
+    private static InputStream pacs008(String messageId, String... transactions) {
+        return stream(xml(messageId, transactions));
+    }
+
+    private static String xml(String messageId, String... transactions) {
+        return """
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                    <FIToFICstmrCdtTrf>
+                        <GrpHdr><MsgId>%s</MsgId></GrpHdr>
+                %s
+                    </FIToFICstmrCdtTrf>
+                </Document>
+                """.formatted(messageId, IntStream.range(0, transactions.length)
+                .mapToObj(i -> transactions[i].formatted(i, 100 + i))
+                .collect(Collectors.joining()));
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long paymentsOf(User user) {
+        return paymentRepository.findAll().stream()
+                .filter(payment -> payment.getUser().getId().equals(user.getId()))
+                .count();
+    }
+
+    private User user() {
+        return userRepository.save(User.builder()
+                .username("user_" + UUID.randomUUID().toString().substring(0, 8))
+                .password("password123")
+                .role(UserRole.ROLE_USER)
+                .build());
+    }
+
+    private void signIn(User user) {
+
+        AuthenticatedUser principal = new AuthenticatedUser(user.getId(), user.getRole());
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(
+                        principal,
+                        null,
+                        List.of(new SimpleGrantedAuthority(user.getRole().name()))
+                )
+        );
+    }
+}
@@ -0,0 +1,135 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.repository.UserRepository;
+import com.ashraf.payment.security.AuthenticatedUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class Pacs002ReportServiceTest {
+
+    @Autowired
+    private Pacs002ReportService reportService;
+
+    @Autowired
+    private IsoIngestionService ingestionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void reportCoversOnlyTheExactMessageIdNotOnesSharingItsPrefix() {
+
+        User user = user();
+        signIn(user);
+
+        String messageId = "MSG-" + UUID.randomUUID().toString().substring(0, 8);
+        String longerMessageId = messageId + "-000123";
+
+        ingest(user, messageId, "TX-1", "TX-2");
+        ingest(user, longerMessageId, "TX-9");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThat(reportService.write(messageId, out)).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8))
+                .contains("<OrgnlMsgId>" + messageId + "</OrgnlMsgId>")
+                .contains("<OrgnlTxId>TX-1</OrgnlTxId>", "<OrgnlTxId>TX-2</OrgnlTxId>")
+                .doesNotContain("TX-9");
+
+        assertThat(report(longerMessageId))
+                .contains("<OrgnlTxId>TX-9</OrgnlTxId>")
+                .doesNotContain("TX-1", "TX-2");
+
+        assertThat(reportService.exists(messageId)).isTrue();
+        assertThat(reportService.exists("MSG-")).isFalse();
+        assertThat(reportService.exists(messageId + "%")).isFalse();
+    }
+
+    @Test
+    void reportIsLimitedToTheCallersPayments() {
+
+        String messageId = "MSG-" + UUID.randomUUID().toString().substring(0, 8);
+
+        User sender = user();
+        ingest(sender, messageId, "TX-1");
+
+        User other = user();
+        signIn(other);
+
+        assertThat(reportService.exists(messageId)).isFalse();
+    }
+
+    private void ingest(User owner, String messageId, String... transactionIds) {
+
+        StringBuilder transactions = new StringBuilder();
+
+        for (String transactionId : transactionIds) {
+            transactions.append("""
+                    <CdtTrfTxInf><PmtId><TxId>%s</TxId></PmtId><IntrBkSttlmAmt Ccy="USD">10</IntrBkSttlmAmt></CdtTrfTxInf>
+                    """.formatted(transactionId));
+        }
+
+        String xml = """
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                    <FIToFICstmrCdtTrf>
+                        <GrpHdr><MsgId>%s</MsgId></GrpHdr>
+                %s
+                    </FIToFICstmrCdtTrf>
+                </Document>
+                """.formatted(messageId, transactions);
+
+        ingestionService.ingest(owner, new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), chunk -> {});
+    }
+
+    private String report(String messageId) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reportService.write(messageId, out);
+
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private User user() {
+        return userRepository.save(User.builder()
+                .username("user_" + UUID.randomUUID().toString().substring(0, 8))
+                .password("password123")
+                .role(UserRole.ROLE_USER)
+                .build());
+    }
+
+    private void signIn(User user) {
+
+        AuthenticatedUser principal = new AuthenticatedUser(user.getId(), user.getRole());
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(
+                        principal,
+                        null,
+                        List.of(new SimpleGrantedAuthority(user.getRole().name()))
+                )
+        );
+    }
+}
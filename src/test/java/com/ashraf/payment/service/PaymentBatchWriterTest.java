@@ -0,0 +1,160 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.config.PaymentProperties;
+import com.ashraf.payment.dto.BatchItemResult;
+import com.ashraf.payment.dto.BatchItemStatus;
+import com.ashraf.payment.dto.PaymentRequest;
+import com.ashraf.payment.entity.Payment;
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.repository.PaymentRepository;
+import com.ashraf.payment.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+@SpringBootTest(properties = "app.payments.batch.chunkSize=5")
+@ActiveProfiles("test")
+class PaymentBatchWriterTest {
+
+    @Autowired
+    private PaymentBatchWriter batchWriter;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private PaymentProperties properties;
+
+    @Test
+    void referenceClashAtFlushIsReportedPerItem() {
+
+        User user = user();
+        String taken = "REF-" + UUID.randomUUID();
+        paymentRepository.save(Payment.create(BigDecimal.TEN, "USD", taken, user));
+
+        // Skip the up-front existence check so the clash only surfaces when the chunk is flushed,
+        // as it does when another writer commits the reference in between
+        PaymentRepository racingRepository = mock(PaymentRepository.class, delegatesTo(paymentRepository));
+        doReturn(Set.of()).when(racingRepository).findExistingReferenceIds(any(Collection.class));
+
+        PaymentBatchWriter writer = new PaymentBatchWriter(
+                racingRepository, entityManager, transactionManager, validator, properties
+        );
+
+        List<PaymentRequest> requests = List.of(
+                request("REF-" + UUID.randomUUID()),
+                request(taken),
+                request("REF-" + UUID.randomUUID())
+        );
+
+        List<BatchItemResult> results = writer.write(user, requests);
+
+        assertThat(results).extracting(BatchItemResult::status).containsExactly(
+                BatchItemStatus.CREATED,
+                BatchItemStatus.DUPLICATE,
+                BatchItemStatus.CREATED
+        );
+        assertThat(paymentsOf(user)).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentBatchesWithTheSameReferencesCreateEachOnce() throws Exception {
+
+        User user = user();
+        List<PaymentRequest> requests = IntStream.range(0, 12)
+                .mapToObj(i -> request("REF-" + UUID.randomUUID()))
+                .toList();
+
+        int writers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<List<BatchItemResult>> outcomes;
+
+        try {
+            List<Future<List<BatchItemResult>>> results = IntStream.range(0, writers)
+                    .mapToObj(i -> executor.submit(() -> {
+                        start.await();
+                        return batchWriter.write(user, requests);
+                    }))
+                    .toList();
+
+            start.countDown();
+
+            outcomes = results.stream().map(result -> {
+                try {
+                    return result.get(30, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            }).toList();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < requests.size(); i++) {
+
+            int index = i;
+
+            assertThat(outcomes)
+                    .extracting(results -> results.get(index).status())
+                    .containsOnly(BatchItemStatus.CREATED, BatchItemStatus.DUPLICATE)
+                    .filteredOn(status -> status == BatchItemStatus.CREATED)
+                    .hasSize(1);
+        }
+        assertThat(paymentsOf(user)).isEqualTo(requests.size());
+    }
+
+    private static PaymentRequest request(String referenceId) {
+        return new PaymentRequest(BigDecimal.valueOf(100), "USD", referenceId);
+    }
+
+    private long paymentsOf(User user) {
+        return paymentRepository.findAll().stream()
+                .filter(payment -> payment.getUser().getId().equals(user.getId()))
+                .count();
+    }
+
+    private User user() {
+        return userRepository.save(User.builder()
+                .username("user_" + UUID.randomUUID().toString().substring(0, 8))
+                .password("password123")
+                .role(UserRole.ROLE_USER)
+                .build());
+    }
+}
@@ -0,0 +1,294 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.dto.BulkTransitionItem;
+import com.ashraf.payment.dto.BulkTransitionRequest;
+import com.ashraf.payment.dto.BulkTransitionResponse;
+import com.ashraf.payment.dto.PaymentResponse;
+import com.ashraf.payment.dto.TransitionOutcome;
+import com.ashraf.payment.entity.Payment;
+import com.ashraf.payment.entity.PaymentStatus;
+import com.ashraf.payment.entity.PaymentTransition;
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.exceptions.PaymentStateConflictException;
+import com.ashraf.payment.repository.PaymentRepository;
+import com.ashraf.payment.repository.UserRepository;
+import com.ashraf.payment.security.AuthenticatedUser;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "app.payments.bulk.chunkSize=10",
+        "app.payments.bulk.maxIds=25",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.ashraf.payment.service.PaymentBulkTransitionServiceTest$SqlRecorder"
+})
+@ActiveProfiles("test")
+class PaymentBulkTransitionServiceTest {
+
+    @Autowired
+    private PaymentBulkTransitionService bulkTransitionService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void idsModeReportsEveryIdAcrossChunkBoundaries() {
+
+        User other = userWithPayments(1);
+        User user = userWithPayments(21);
+        signIn(user);
+
+        List<UUID> own = paymentIdsOf(user);
+        List<UUID> authorized = own.subList(0, 20);
+        authorized.forEach(id -> paymentService.authorizePayment(id, null));
+
+        UUID stillCreated = own.get(20);
+        UUID missing = UUID.randomUUID();
+        UUID othersPayment = paymentIdsOf(other).getFirst();
+
+        List<UUID> ids = new ArrayList<>(authorized);
+        ids.add(5, stillCreated);
+        ids.add(11, missing);
+        ids.add(othersPayment);
+
+        SqlRecorder.statements.clear();
+
+        BulkTransitionResponse response = bulkTransitionService.apply(
+                new BulkTransitionRequest(PaymentTransition.CAPTURE, ids, null));
+
+        assertThat(response.complete()).isTrue();
+        assertThat(response.applied()).isEqualTo(20);
+        assertThat(response.conflicts()).isEqualTo(1);
+        assertThat(response.notFound()).isEqualTo(2);
+        assertThat(response.items()).extracting(BulkTransitionItem::id).containsExactlyElementsOf(ids);
+
+        Map<UUID, TransitionOutcome> outcomes = outcomes(response);
+
+        assertThat(authorized).allSatisfy(id -> assertThat(outcomes.get(id)).isEqualTo(TransitionOutcome.APPLIED));
+        assertThat(outcomes.get(stillCreated)).isEqualTo(TransitionOutcome.CONFLICT);
+        assertThat(outcomes.get(missing)).isEqualTo(TransitionOutcome.NOT_FOUND);
+        assertThat(outcomes.get(othersPayment)).isEqualTo(TransitionOutcome.NOT_FOUND);
+
+        assertThat(authorized).allSatisfy(id ->
+                assertThat(paymentService.getPayment(id).status()).isEqualTo(PaymentStatus.CAPTURED));
+        assertThat(paymentService.getPayment(stillCreated).status()).isEqualTo(PaymentStatus.CREATED);
+
+        // 23 ids in chunks of 10, each chunk locking its rows
+        assertThat(lockingSelects()).hasSize(3);
+    }
+
+    @Test
+    void filterModeStopsAtTheLimitAndFinishesOnTheNextCall() {
+
+        User user = userWithPayments(30);
+        signIn(user);
+
+        LocalDateTime before = LocalDateTime.now().plusMinutes(1);
+
+        SqlRecorder.statements.clear();
+
+        BulkTransitionResponse first = bulkTransitionService.apply(
+                new BulkTransitionRequest(PaymentTransition.AUTHORIZE, null, before));
+
+        // maxIds is 25: chunks of 10, 10 and 5
+        assertThat(first.complete()).isFalse();
+        assertThat(first.applied()).isEqualTo(25);
+        assertThat(first.items()).extracting(BulkTransitionItem::id).doesNotHaveDuplicates();
+        assertThat(lockingSelects()).hasSize(3);
+
+        BulkTransitionResponse second = bulkTransitionService.apply(
+                new BulkTransitionRequest(PaymentTransition.AUTHORIZE, null, before));
+
+        assertThat(second.complete()).isTrue();
+        assertThat(second.applied()).isEqualTo(5);
+        assertThat(second.items()).extracting(BulkTransitionItem::id)
+                .doesNotContainAnyElementsOf(first.items().stream().map(BulkTransitionItem::id).toList());
+        assertThat(paymentIdsOf(user)).allSatisfy(id ->
+                assertThat(paymentService.getPayment(id).status()).isEqualTo(PaymentStatus.AUTHORIZED));
+
+        BulkTransitionResponse nothingLeft = bulkTransitionService.apply(
+                new BulkTransitionRequest(PaymentTransition.AUTHORIZE, null, before));
+
+        assertThat(nothingLeft.complete()).isTrue();
+        assertThat(nothingLeft.items()).isEmpty();
+    }
+
+    @Test
+    void concurrentBulkAndSingleCapturesMoveEachPaymentOnce() throws Exception {
+
+        User user = userWithPayments(20);
+        signIn(user);
+
+        List<UUID> ids = paymentIdsOf(user);
+        Map<UUID, Long> authorizedVersions = ids.stream().collect(Collectors.toMap(
+                Function.identity(),
+                id -> paymentService.authorizePayment(id, null).version()
+        ));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+
+        BulkTransitionResponse bulk;
+        List<UUID> capturedSingly = new ArrayList<>();
+
+        try {
+            Future<BulkTransitionResponse> bulkResult = executor.submit(() -> {
+                signIn(user);
+                try {
+                    start.await();
+                    return bulkTransitionService.apply(
+                            new BulkTransitionRequest(PaymentTransition.CAPTURE, ids, null));
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+            });
+
+            List<Future<UUID>> singleResults = ids.stream()
+                    .map(id -> executor.submit(() -> {
+                        signIn(user);
+                        try {
+                            start.await();
+                            paymentService.capturePayment(id, null);
+                            return id;
+                        } catch (PaymentStateConflictException e) {
+                            return null;
+                        } finally {
+                            SecurityContextHolder.clearContext();
+                        }
+                    }))
+                    .toList();
+
+            start.countDown();
+
+            bulk = bulkResult.get(30, TimeUnit.SECONDS);
+
+            for (Future<UUID> result : singleResults) {
+                UUID captured = result.get(30, TimeUnit.SECONDS);
+                if (captured != null) {
+                    capturedSingly.add(captured);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<UUID, TransitionOutcome> outcomes = outcomes(bulk);
+
+        assertThat(bulk.applied() + capturedSingly.size()).isEqualTo(ids.size());
+        assertThat(ids).allSatisfy(id -> {
+
+            boolean byBulk = outcomes.get(id) == TransitionOutcome.APPLIED;
+
+            assertThat(byBulk).isNotEqualTo(capturedSingly.contains(id));
+
+            PaymentResponse payment = paymentService.getPayment(id);
+
+            assertThat(payment.status()).isEqualTo(PaymentStatus.CAPTURED);
+            assertThat(payment.version()).isEqualTo(authorizedVersions.get(id) + 1);
+        });
+    }
+
+    private List<String> lockingSelects() {
+        return SqlRecorder.statements.stream()
+                .filter(sql -> sql.startsWith("select") && sql.contains(" for update"))
+                .toList();
+    }
+
+    private static Map<UUID, TransitionOutcome> outcomes(BulkTransitionResponse response) {
+        return response.items().stream()
+                .collect(Collectors.toMap(BulkTransitionItem::id, BulkTransitionItem::outcome));
+    }
+
+    private List<UUID> paymentIdsOf(User user) {
+        return paymentRepository.findAll().stream()
+                .filter(payment -> payment.getUser().getId().equals(user.getId()))
+                .map(Payment::getId)
+                .sorted()
+                .toList();
+    }
+
+    private User userWithPayments(int count) {
+
+        User user = userRepository.save(User.builder()
+                .username("user_" + UUID.randomUUID().toString().substring(0, 8))
+                .password("password123")
+                .role(UserRole.ROLE_USER)
+                .build());
+
+        paymentRepository.saveAll(IntStream.range(0, count)
+                .mapToObj(i -> Payment.create(
+                        BigDecimal.valueOf(100 + i),
+                        "USD",
+                        "REF-" + UUID.randomUUID(),
+                        user
+                ))
+                .toList());
+
+        return user;
+    }
+
+    private void signIn(User user) {
+
+        AuthenticatedUser principal = new AuthenticatedUser(user.getId(), user.getRole());
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(
+                        principal,
+                        null,
+                        List.of(new SimpleGrantedAuthority(user.getRole().name()))
+                )
+        );
+    }
+
+    /**
+     * Keeps the SQL Hibernate sends, to check the lock queries really select {@code for update}.
+     */
+    public static class SqlRecorder implements StatementInspector {
+
+        static final Queue<String> statements = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql.toLowerCase());
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.dto.ExportFormat;
+import com.ashraf.payment.entity.Payment;
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.repository.PaymentRepository;
+import com.ashraf.payment.repository.UserRepository;
+import com.ashraf.payment.security.AuthenticatedUser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PaymentExportServiceTest {
+
+    private static final int PAYMENTS = 2_500;
+
+    private static final List<String> AWKWARD_REFERENCES = List.of(
+            "REF,with,commas",
+            "REF \"quoted\"",
+            "REF\nmultiline",
+            "=HYPERLINK(\"http://example.com\")",
+            "+1-555",
+            "-2+3",
+            "@SUM(A1:A2)"
+    );
+
+    @Autowired
+    private PaymentExportService exportService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User user;
+
+    @BeforeEach
+    void userWithPayments() {
+
+        user = userRepository.save(User.builder()
+                .username("user_" + UUID.randomUUID().toString().substring(0, 8))
+                .password("password123")
+                .role(UserRole.ROLE_USER)
+                .build());
+
+        List<Payment> payments = new ArrayList<>(IntStream.range(0, PAYMENTS - AWKWARD_REFERENCES.size())
+                .mapToObj(i -> Payment.create(BigDecimal.valueOf(100 + i), "USD", "REF-" + UUID.randomUUID(), user))
+                .toList());
+
+        AWKWARD_REFERENCES.forEach(reference ->
+                payments.add(Payment.create(BigDecimal.TEN, "USD", reference + " " + UUID.randomUUID(), user)));
+
+        paymentRepository.saveAll(payments);
+
+        AuthenticatedUser principal = new AuthenticatedUser(user.getId(), user.getRole());
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(
+                        principal,
+                        null,
+                        List.of(new SimpleGrantedAuthority(user.getRole().name()))
+                )
+        );
+    }
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void ndjsonExportWritesOneParsableLinePerPayment() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exportService.export(ExportFormat.NDJSON, null, null, out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+
+        assertThat(rows).isEqualTo(PAYMENTS);
+        assertThat(lines).hasSize(PAYMENTS).allSatisfy(line ->
+                assertThat(objectMapper.readTree(line).get("userId").asText()).isEqualTo(user.getId().toString()));
+    }
+
+    @Test
+    void csvExportEscapesSeparatorsAndNeutralisesFormulas() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exportService.export(ExportFormat.CSV, null, null, out);
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+
+        assertThat(rows).isEqualTo(PAYMENTS);
+        assertThat(csv).startsWith("id,amount,currency,status,referenceId,createdAt,updatedAt,userId,username\n");
+        // Header, one line per payment, plus the one embedded newline
+        assertThat(csv.lines()).hasSize(PAYMENTS + 2);
+        assertThat(csv)
+                .contains(",\"REF,with,commas ")
+                .contains(",\"REF \"\"quoted\"\" ")
+                .contains(",\"REF\nmultiline ")
+                .contains(",\"'=HYPERLINK(\"\"http://example.com\"\") ")
+                .contains(",'+1-555 ")
+                .contains(",'-2+3 ")
+                .contains(",'@SUM(A1:A2) ")
+                .doesNotContain(",=", ",+", ",@", ",-2");
+    }
+}
@@ -0,0 +1,451 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.dto.PaymentPage;
+import com.ashraf.payment.dto.PaymentResponse;
+import com.ashraf.payment.entity.Payment;
+import com.ashraf.payment.entity.PaymentStatus;
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.exceptions.IsoTransactionConflictException;
+import com.ashraf.payment.exceptions.PaymentStateConflictException;
+import com.ashraf.payment.exceptions.PreconditionFailedException;
+import com.ashraf.payment.iso.IsoTransaction;
+import com.ashraf.payment.iso.Pacs008Reader;
+import com.ashraf.payment.repository.PaymentRepository;
+import com.ashraf.payment.repository.UserRepository;
+import com.ashraf.payment.security.AuthenticatedUser;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "app.payments.pagination.maxSize=1000")
+@ActiveProfiles("test")
+class PaymentServiceTest {
+
+    private static final int PAYMENTS = 1_000;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void listingPaymentsRunsOneStatementRegardlessOfRowCount() {
+
+        User user = userWithPayments(PAYMENTS);
+        signIn(user);
+
+        Statistics statistics = statistics();
+        statistics.clear();
+
+        PaymentPage page = paymentService.getAllPayments(null, null, null, PAYMENTS);
+
+        assertThat(page.items())
+                .hasSize(PAYMENTS)
+                .allSatisfy(payment -> {
+                    assertThat(payment.userId()).isEqualTo(user.getId());
+                    assertThat(payment.username()).isEqualTo(user.getUsername());
+                });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void walkingCursorsVisitsEveryPaymentOnceEvenWithTiedTimestamps() {
+
+        User user = userWithPayments(23);
+        signIn(user);
+
+        // Most rows share one createdAt, so page boundaries fall inside the tie and only the id breaks it
+        LocalDateTime tied = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        jdbcTemplate.update("update payments set created_at = ? where user_id = ?", tied, user.getId());
+        jdbcTemplate.update(
+                "update payments set created_at = ? where id in (select id from payments where user_id = ? order by id fetch first 3 rows only)",
+                tied.minusMinutes(1), user.getId()
+        );
+
+        List<PaymentResponse> walked = walk(null, null, 5);
+
+        assertThat(walked).extracting(PaymentResponse::id)
+                .doesNotHaveDuplicates()
+                .containsExactlyInAnyOrderElementsOf(paymentRepository.findAll().stream()
+                        .filter(payment -> payment.getUser().getId().equals(user.getId()))
+                        .map(Payment::getId)
+                        .toList());
+        assertThat(walked).isSortedAccordingTo(Comparator
+                .comparing(PaymentResponse::createdAt)
+                .thenComparing(PaymentResponse::id)
+                .reversed());
+    }
+
+    @Test
+    void cursorsKeepTheStatusAndCurrencyFilters() {
+
+        User user = userWithPayments(6);
+
+        paymentRepository.saveAll(IntStream.range(0, 7)
+                .mapToObj(i -> Payment.create(BigDecimal.TEN, "EUR", "REF-" + UUID.randomUUID(), user))
+                .toList());
+
+        signIn(user);
+
+        List<PaymentResponse> euros = walk(null, "EUR", 2);
+        Set<UUID> authorized = new HashSet<>();
+
+        for (PaymentResponse payment : euros.subList(0, 3)) {
+            authorized.add(paymentService.authorizePayment(payment.id(), null).id());
+        }
+        paymentService.authorizePayment(walk(null, "USD", 10).getFirst().id(), null);
+
+        assertThat(euros).hasSize(7).allSatisfy(payment -> assertThat(payment.currency()).isEqualTo("EUR"));
+        assertThat(walk(PaymentStatus.AUTHORIZED, "EUR", 2))
+                .extracting(PaymentResponse::id)
+                .containsExactlyInAnyOrderElementsOf(authorized);
+        assertThat(walk(PaymentStatus.CREATED, "EUR", 2)).hasSize(4);
+        assertThat(walk(PaymentStatus.AUTHORIZED, null, 2)).hasSize(4);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+
+        signIn(userWithPayments(1));
+
+        assertThatThrownBy(() -> paymentService.getAllPayments(null, null, "not-a-cursor", 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid cursor");
+    }
+
+    @Test
+    void fetchingOnePaymentDoesNotLoadItsOwner() {
+
+        User user = userWithPayments(1);
+        signIn(user);
+
+        UUID paymentId = paymentIdOf(user);
+
+        Statistics statistics = statistics();
+        statistics.clear();
+
+        PaymentResponse payment = paymentService.getPayment(paymentId);
+
+        assertThat(payment.username()).isEqualTo(user.getUsername());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void concurrentCapturesLetExactlyOnePaymentTransitionWin() throws Exception {
+
+        User user = userWithPayments(1);
+        UUID paymentId = paymentIdOf(user);
+
+        signIn(user);
+        paymentService.authorizePayment(paymentId, null);
+
+        int attempts = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(attempts);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<Boolean>> results = IntStream.range(0, attempts)
+                    .mapToObj(i -> executor.submit(() -> {
+                        signIn(user);
+                        start.await();
+                        try {
+                            paymentService.capturePayment(paymentId, null);
+                            return true;
+                        } catch (PaymentStateConflictException e) {
+                            return false;
+                        } finally {
+                            SecurityContextHolder.clearContext();
+                        }
+                    }))
+                    .toList();
+
+            start.countDown();
+
+            long captured = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    captured++;
+                }
+            }
+
+            assertThat(captured).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        PaymentResponse payment = paymentService.getPayment(paymentId);
+
+        assertThat(payment.status()).isEqualTo(PaymentStatus.CAPTURED);
+    }
+
+    @Test
+    void transitionFromWrongStateIsAConflict() {
+
+        User user = userWithPayments(1);
+        UUID paymentId = paymentIdOf(user);
+        signIn(user);
+
+        assertThatThrownBy(() -> paymentService.capturePayment(paymentId, null))
+                .isInstanceOf(PaymentStateConflictException.class)
+                .hasMessage("Cannot capture payment in state CREATED");
+    }
+
+    @Test
+    void transitionWithStaleVersionFailsThePrecondition() {
+
+        User user = userWithPayments(1);
+        UUID paymentId = paymentIdOf(user);
+        signIn(user);
+
+        long version = paymentService.getPaymentVersion(paymentId).orElseThrow();
+        PaymentResponse authorized = paymentService.authorizePayment(paymentId, version);
+
+        assertThat(authorized.version()).isEqualTo(version + 1);
+        assertThatThrownBy(() -> paymentService.capturePayment(paymentId, version))
+                .isInstanceOf(PreconditionFailedException.class);
+        assertThat(paymentService.capturePayment(paymentId, authorized.version()).status())
+                .isEqualTo(PaymentStatus.CAPTURED);
+    }
+
+    @Test
+    void concurrentIsoResubmissionsDeduplicateOnTheDerivedReference() throws Exception {
+
+        User user = userWithPayments(0);
+
+        int messages = 500;
+        int threads = 16;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Map<String, Set<UUID>> idsByMessage = new ConcurrentHashMap<>();
+
+        try {
+            List<Future<?>> results = new ArrayList<>();
+
+            // Both copies of a message are queued back to back and meet at a barrier,
+            // so every pair reaches the writer together
+            for (int i = 0; i < messages; i++) {
+
+                String xml = pacs008("CONC-" + user.getUsername() + "-" + i, i);
+                CyclicBarrier together = new CyclicBarrier(2);
+
+                for (int copy = 0; copy < 2; copy++) {
+                    results.add(executor.submit(() -> {
+                        signIn(user);
+                        try {
+                            start.await();
+                            together.await(10, TimeUnit.SECONDS);
+
+                            PaymentResponse payment = paymentService.createIsoPayment(read(xml));
+
+                            idsByMessage.computeIfAbsent(xml, key -> ConcurrentHashMap.newKeySet())
+                                    .add(payment.id());
+                            return null;
+                        } finally {
+                            SecurityContextHolder.clearContext();
+                        }
+                    }));
+                }
+            }
+
+            start.countDown();
+
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(idsByMessage).hasSize(messages);
+        assertThat(idsByMessage.values()).allSatisfy(ids -> assertThat(ids).hasSize(1));
+        assertThat(paymentRepository.findAll().stream()
+                .filter(payment -> payment.getUser().getId().equals(user.getId())))
+                .hasSize(messages);
+    }
+
+    @Test
+    void sameIsoMessageFromTwoSendersCreatesAPaymentForEach() {
+
+        String xml = pacs008("SHARED-" + UUID.randomUUID().toString().substring(0, 8), 1);
+
+        User first = userWithPayments(0);
+        signIn(first);
+        PaymentResponse firstPayment = paymentService.createIsoPayment(read(xml));
+
+        User second = userWithPayments(0);
+        signIn(second);
+        PaymentResponse secondPayment = paymentService.createIsoPayment(read(xml));
+
+        assertThat(firstPayment.userId()).isEqualTo(first.getId());
+        assertThat(secondPayment.userId()).isEqualTo(second.getId());
+        assertThat(secondPayment.id()).isNotEqualTo(firstPayment.id());
+        assertThat(secondPayment.referenceId()).isNotEqualTo(firstPayment.referenceId());
+    }
+
+    @Test
+    void isoIdsThatOnlyDifferInWhereTheSeparatorFallsDoNotCollide() {
+
+        signIn(userWithPayments(0));
+
+        String prefix = "A" + UUID.randomUUID().toString().substring(0, 8);
+
+        PaymentResponse first = paymentService.createIsoPayment(read(pacs008(prefix, "B-C", 1)));
+        PaymentResponse second = paymentService.createIsoPayment(read(pacs008(prefix + "-B", "C", 2)));
+
+        assertThat(second.id()).isNotEqualTo(first.id());
+        assertThat(second.amount()).isNotEqualByComparingTo(first.amount());
+    }
+
+    @Test
+    void isoResubmissionWithADifferentAmountIsRejected() {
+
+        signIn(userWithPayments(0));
+
+        String messageId = "MSG-" + UUID.randomUUID().toString().substring(0, 8);
+
+        PaymentResponse original = paymentService.createIsoPayment(read(pacs008(messageId, 1)));
+
+        assertThat(paymentService.createIsoPayment(read(pacs008(messageId, 1))).id()).isEqualTo(original.id());
+        assertThatThrownBy(() -> paymentService.createIsoPayment(read(pacs008(messageId, 2))))
+                .isInstanceOf(IsoTransactionConflictException.class);
+    }
+
+    private static IsoTransaction read(String xml) {
+        return Pacs008Reader.readFirst(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String pacs008(String messageId, int amount) {
+        return pacs008(messageId, "TX-1", amount);
+    }
+
+    private String pacs008(String messageId, String transactionId, int amount) {
+        return """
+                <Document xmlns="urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08">
+                    <FIToFICstmrCdtTrf>
+                        <GrpHdr><MsgId>%s</MsgId></GrpHdr>
+                        <CdtTrfTxInf>
+                            <PmtId><EndToEndId>E2E-1</EndToEndId><TxId>%s</TxId></PmtId>
+                            <IntrBkSttlmAmt Ccy="USD">%d</IntrBkSttlmAmt>
+                        </CdtTrfTxInf>
+                    </FIToFICstmrCdtTrf>
+                </Document>
+                """.formatted(messageId, transactionId, 100 + amount);
+    }
+
+    private List<PaymentResponse> walk(PaymentStatus status, String currency, int limit) {
+
+        List<PaymentResponse> payments = new ArrayList<>();
+        String cursor = null;
+
+        do {
+            PaymentPage page = paymentService.getAllPayments(status, currency, cursor, limit);
+
+            assertThat(page.items()).hasSizeLessThanOrEqualTo(limit);
+            payments.addAll(page.items());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        return payments;
+    }
+
+    private UUID paymentIdOf(User user) {
+        return paymentRepository.findAll().stream()
+                .filter(payment -> payment.getUser().getId().equals(user.getId()))
+                .findFirst()
+                .orElseThrow()
+                .getId();
+    }
+
+    private User userWithPayments(int count) {
+
+        User user = userRepository.save(User.builder()
+                .username("user_" + UUID.randomUUID().toString().substring(0, 8))
+                .password("password123")
+                .role(UserRole.ROLE_USER)
+                .build());
+
+        List<Payment> payments = IntStream.range(0, count)
+                .mapToObj(i -> Payment.create(
+                        BigDecimal.valueOf(100 + i),
+                        "USD",
+                        "REF-" + UUID.randomUUID(),
+                        user
+                ))
+                .toList();
+
+        paymentRepository.saveAll(payments);
+
+        return user;
+    }
+
+    private void signIn(User user) {
+
+        AuthenticatedUser principal = new AuthenticatedUser(user.getId(), user.getRole());
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(
+                        principal,
+                        null,
+                        List.of(new SimpleGrantedAuthority(user.getRole().name()))
+                )
+        );
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+    }
+}
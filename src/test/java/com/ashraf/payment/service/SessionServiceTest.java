@@ -0,0 +1,85 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.repository.UserRepository;
+import com.ashraf.payment.repository.UserSessionRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class SessionServiceTest {
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSessionRepository sessionRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void logoutAllStatementCountDoesNotGrowWithSessions() {
+
+        long withOneSession = statementsForLogoutAll(1);
+        long withManySessions = statementsForLogoutAll(50);
+
+        assertThat(withOneSession).isEqualTo(1);
+        assertThat(withManySessions).isEqualTo(withOneSession);
+    }
+
+    private long statementsForLogoutAll(int sessionCount) {
+
+        User user = userRepository.save(User.builder()
+                .username("user_" + UUID.randomUUID().toString().substring(0, 8))
+                .password("password123")
+                .role(UserRole.ROLE_USER)
+                .build());
+
+        for (int i = 0; i < sessionCount; i++) {
+            sessionService.createSession(
+                    user,
+                    UUID.randomUUID().toString(),
+                    UUID.randomUUID().toString(),
+                    3600,
+                    "device-" + i,
+                    "127.0.0.1",
+                    "JUnit"
+            );
+        }
+
+        Statistics statistics = entityManagerFactory
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+
+        statistics.clear();
+
+        sessionService.logoutAll(user.getId());
+
+        long statements = statistics.getPrepareStatementCount();
+
+        assertThat(sessionRepository.findAll())
+                .filteredOn(session -> session.getUser().getId().equals(user.getId()))
+                .hasSize(sessionCount)
+                .allSatisfy(session -> {
+                    assertThat(session.isActive()).isFalse();
+                    assertThat(session.getInvalidatedAt()).isNotNull();
+                });
+
+        return statements;
+    }
+}
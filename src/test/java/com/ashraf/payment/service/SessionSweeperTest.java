@@ -0,0 +1,95 @@
+package com.ashraf.payment.service;
+
+import com.ashraf.payment.entity.User;
+import com.ashraf.payment.entity.UserRole;
+import com.ashraf.payment.entity.UserSession;
+import com.ashraf.payment.repository.UserRepository;
+import com.ashraf.payment.repository.UserSessionRepository;
+import com.ashraf.payment.security.TokenDigest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "app.session.sweeper.batchSize=10",
+        "app.session.sweeper.retention=30d"
+})
+@ActiveProfiles("test")
+class SessionSweeperTest {
+
+    @Autowired
+    private SessionSweeper sweeper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSessionRepository sessionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void sweepExpiresAndPurgesAcrossChunksAndKeepsActiveSessions() {
+
+        User user = userRepository.save(User.builder()
+                .username("user_" + UUID.randomUUID().toString().substring(0, 8))
+                .password("password123")
+                .role(UserRole.ROLE_USER)
+                .build());
+
+        LocalDateTime now = LocalDateTime.now();
+
+        // More than two chunks of each kind, so the sweeper has to keep going past the first
+        List<UUID> live = sessions(user, 5, now.plusHours(1));
+        List<UUID> expired = sessions(user, 25, now.minusMinutes(1));
+        List<UUID> dead = sessions(user, 25, now.plusHours(1));
+        List<UUID> recentlyInvalidated = sessions(user, 3, now.plusHours(1));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            sessionRepository.expireByIds(dead, now.minusDays(31));
+            sessionRepository.expireByIds(recentlyInvalidated, now.minusDays(1));
+        });
+
+        sweeper.sweep();
+
+        Map<UUID, UserSession> remaining = sessionRepository.findAll().stream()
+                .filter(session -> session.getUser().getId().equals(user.getId()))
+                .collect(Collectors.toMap(UserSession::getId, Function.identity()));
+
+        assertThat(remaining.keySet())
+                .containsAll(live)
+                .containsAll(expired)
+                .containsAll(recentlyInvalidated)
+                .doesNotContainAnyElementsOf(dead);
+        assertThat(live).allSatisfy(id -> assertThat(remaining.get(id).isActive()).isTrue());
+        assertThat(expired).allSatisfy(id -> {
+            assertThat(remaining.get(id).isActive()).isFalse();
+            assertThat(remaining.get(id).getInvalidatedAt()).isNotNull();
+        });
+        assertThat(recentlyInvalidated).allSatisfy(id -> assertThat(remaining.get(id).isActive()).isFalse());
+    }
+
+    private List<UUID> sessions(User user, int count, LocalDateTime expiresAt) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> sessionRepository.save(UserSession.builder()
+                        .user(user)
+                        .jti(UUID.randomUUID().toString())
+                        .refreshTokenHash(TokenDigest.sha256(UUID.randomUUID().toString()))
+                        .expiresAt(expiresAt)
+                        .build()).getId())
+                .toList();
+    }
+}